@@ -0,0 +1,227 @@
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * An immutable snapshot of the follow graph of a network in compressed
+ * sparse row form: the followees of all users in one int array, and their
+ * followers in another, each indexed by an array of offsets. Scanning
+ * neighbours is then a walk over contiguous memory, which is what the
+ * whole-graph algorithms (PageRank and the like) spend their time on.
+ *
+ * Users are identified by their ids (indices) in the network; lists keep
+ * the order of the network's follows, except in undirected() graphs. A
+ * reorder()ed copy numbers the users differently, for locality (see
+ * GraphOrdering); originalId() and toOriginal() map its ids and results
+ * back to those of the network.
+ */
+public class CompactGraph {
+
+    private final int nodeCount;
+    private final int[] outOffsets;     // followees of u: outTargets[outOffsets[u] .. outOffsets[u + 1])
+    private final int[] outTargets;
+    private final int[] inOffsets;      // followers of u: inSources[inOffsets[u] .. inOffsets[u + 1])
+    private final int[] inSources;
+    private final int[] originalIds;    // originalIds[u] = the network id of u; null if not reordered (u is its network id)
+    private CompactGraph undirected;    // built on first use
+
+    /** Creates a snapshot of the follows of the first nodeCount users. */
+    public CompactGraph(IdLists followees, IdLists followers, int nodeCount) {
+        this.nodeCount = nodeCount;
+        this.outOffsets = new int[nodeCount + 1];
+        this.inOffsets = new int[nodeCount + 1];
+        for (int u = 0; u < nodeCount; u++) {
+            outOffsets[u + 1] = outOffsets[u] + followees.size(u);
+            inOffsets[u + 1] = inOffsets[u] + followers.size(u);
+        }
+        this.outTargets = new int[outOffsets[nodeCount]];
+        this.inSources = new int[inOffsets[nodeCount]];
+        for (int u = 0; u < nodeCount; u++) {
+            System.arraycopy(followees.array(u), 0, outTargets, outOffsets[u], followees.size(u));
+            System.arraycopy(followers.array(u), 0, inSources, inOffsets[u], followers.size(u));
+        }
+        this.originalIds = null;
+    }
+
+    private CompactGraph(int nodeCount, int[] outOffsets, int[] outTargets, int[] inOffsets, int[] inSources,
+                         int[] originalIds) {
+        this.nodeCount = nodeCount;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.inOffsets = inOffsets;
+        this.inSources = inSources;
+        this.originalIds = originalIds;
+    }
+
+    // an undirected graph: the same lists of neighbours both ways
+    private CompactGraph(int nodeCount, int[] offsets, int[] targets, int[] originalIds) {
+        this(nodeCount, offsets, targets, offsets, targets, originalIds);
+        this.undirected = this;
+    }
+
+    /**
+     * Returns the undirected version of this graph, for algorithms that
+     * don't care who follows whom: the followees and the followers of each
+     * user are both its neighbours, each once, sorted by id. Built in
+     * parallel on first use, in two passes that take no more memory than
+     * the result (the first only counts the neighbours).
+     */
+    public CompactGraph undirected() {
+        if (undirected == null) {
+            int[] offsets = new int[nodeCount + 1];
+            IntStream.range(0, nodeCount).parallel().forEach(u -> offsets[u + 1] = mergeNeighbours(u, null, 0));
+            for (int u = 0; u < nodeCount; u++) {
+                offsets[u + 1] += offsets[u];
+            }
+            int[] targets = new int[offsets[nodeCount]];
+            IntStream.range(0, nodeCount).parallel().forEach(u -> mergeNeighbours(u, targets, offsets[u]));
+            undirected = new CompactGraph(nodeCount, offsets, targets, originalIds);
+        }
+        return undirected;
+    }
+
+    // writes the sorted distinct neighbours of u other than u to into[at ..] (if into
+    // isn't null), and returns their number
+    private int mergeNeighbours(int u, int[] into, int at) {
+        int out = outDegree(u);
+        int in = inDegree(u);
+        int[] all = new int[out + in];
+        System.arraycopy(outTargets, outOffsets[u], all, 0, out);
+        System.arraycopy(inSources, inOffsets[u], all, out, in);
+        Arrays.sort(all);
+        int count = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (all[i] != u && (i == 0 || all[i] != all[i - 1])) {
+                if (into != null) into[at + count] = all[i];
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a copy of this graph in which user order[i] is numbered i,
+     * for every i; order must hold every id once. Neighbour lists are
+     * sorted by new id, so that walking them moves forward in memory.
+     */
+    public CompactGraph reorder(int[] order) {
+        if (order.length != nodeCount) {
+            throw new IllegalArgumentException("order has " + order.length + " ids, not " + nodeCount);
+        }
+        int[] newId = new int[nodeCount];
+        Arrays.fill(newId, -1);
+        for (int i = 0; i < nodeCount; i++) {
+            if (order[i] < 0 || order[i] >= nodeCount || newId[order[i]] >= 0) {
+                throw new IllegalArgumentException("order is not a permutation: " + order[i] + " at " + i);
+            }
+            newId[order[i]] = i;
+        }
+        int[] newOutOffsets = new int[nodeCount + 1];
+        int[] newInOffsets = new int[nodeCount + 1];
+        int[] newOriginalIds = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            newOutOffsets[i + 1] = newOutOffsets[i] + outDegree(order[i]);
+            newInOffsets[i + 1] = newInOffsets[i] + inDegree(order[i]);
+            newOriginalIds[i] = originalId(order[i]);
+        }
+        int[] newOutTargets = new int[outTargets.length];
+        int[] newInSources = new int[inSources.length];
+        IntStream.range(0, nodeCount).parallel().forEach(i -> {
+            int u = order[i];
+            relabel(outTargets, outOffsets[u], outOffsets[u + 1], newId, newOutTargets, newOutOffsets[i]);
+            relabel(inSources, inOffsets[u], inOffsets[u + 1], newId, newInSources, newInOffsets[i]);
+        });
+        return new CompactGraph(nodeCount, newOutOffsets, newOutTargets, newInOffsets, newInSources,
+                                newOriginalIds);
+    }
+
+    // copies ids[from .. to) to into[at ..], renumbered and sorted
+    private static void relabel(int[] ids, int from, int to, int[] newId, int[] into, int at) {
+        for (int i = from; i < to; i++) {
+            into[at + i - from] = newId[ids[i]];
+        }
+        Arrays.sort(into, at, at + to - from);
+    }
+
+    /** Returns the id in the network of user u of this graph. */
+    public int originalId(int u) {
+        return (originalIds == null) ? u : originalIds[u];
+    }
+
+    /** Returns a copy of the given per-user values of this graph, indexed by network id instead. */
+    public int[] toOriginal(int[] values) {
+        int[] result = new int[nodeCount];
+        for (int u = 0; u < nodeCount; u++) {
+            result[originalId(u)] = values[u];
+        }
+        return result;
+    }
+
+    /** Returns a copy of the given per-user values of this graph, indexed by network id instead. */
+    public double[] toOriginal(double[] values) {
+        double[] result = new double[nodeCount];
+        for (int u = 0; u < nodeCount; u++) {
+            result[originalId(u)] = values[u];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the given per-user values, indexed by network id, indexed by
+     * the ids of this graph instead; users whose network id is beyond the
+     * values get the value missing.
+     */
+    public double[] fromOriginal(double[] values, double missing) {
+        double[] result = new double[nodeCount];
+        for (int u = 0; u < nodeCount; u++) {
+            int id = originalId(u);
+            result[u] = (id < values.length) ? values[id] : missing;
+        }
+        return result;
+    }
+
+    /** Returns the number of users. */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /** Returns the number of follows. */
+    public int edgeCount() {
+        return outTargets.length;
+    }
+
+    /** Returns the number of users the given user follows. */
+    public int outDegree(int u) {
+        return outOffsets[u + 1] - outOffsets[u];
+    }
+
+    /** Returns the number of followers of the given user. */
+    public int inDegree(int u) {
+        return inOffsets[u + 1] - inOffsets[u];
+    }
+
+    /**
+     * Returns the array holding the followees of all users: those of user u
+     * are at indices outStart(u) to outStart(u + 1) - 1. Don't modify it.
+     */
+    public int[] outTargets() {
+        return outTargets;
+    }
+
+    /** Returns the index in outTargets() of the first followee of user u (u may be nodeCount()). */
+    public int outStart(int u) {
+        return outOffsets[u];
+    }
+
+    /**
+     * Returns the array holding the followers of all users: those of user u
+     * are at indices inStart(u) to inStart(u + 1) - 1. Don't modify it.
+     */
+    public int[] inSources() {
+        return inSources;
+    }
+
+    /** Returns the index in inSources() of the first follower of user u (u may be nodeCount()). */
+    public int inStart(int u) {
+        return inOffsets[u];
+    }
+}
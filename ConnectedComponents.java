@@ -0,0 +1,155 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * The weakly connected components of the follow graph (users linked by
+ * follows in either direction), in a union-find over user ids: every user
+ * points to a parent in its component, up to a root that stands for the
+ * component. A follow merges two components in near-constant time, with
+ * union by rank and path compression.
+ *
+ * An unfollow may split a component, which a union-find can't undo, so the
+ * components are then recomputed from scratch by recompute(), in parallel:
+ * the follows are split among threads, which link roots with
+ * compare-and-set, always the higher id under the lower, without locks.
+ *
+ * Users are identified by their ids (indices) in the network, and are
+ * added in that order.
+ */
+public class ConnectedComponents {
+
+    private final int[] parent;     // parent[u] == u for roots
+    private final byte[] rank;      // an upper bound of the height of each root's tree
+    private int userCount;
+    private int count;              // number of roots among the first userCount users
+
+    /** Creates the components of a network of up to maxUserCount users, holding none. */
+    public ConnectedComponents(int maxUserCount) {
+        parent = new int[maxUserCount];
+        rank = new byte[maxUserCount];
+    }
+
+    /** Adds the next user, in a component of its own. */
+    public void addUser() {
+        parent[userCount] = userCount;
+        rank[userCount] = 0;
+        userCount++;
+        count++;
+    }
+
+    /** Returns the number of components. */
+    public int count() {
+        return count;
+    }
+
+    /** Returns the root of the component of the given user. */
+    public int find(int u) {
+        while (parent[u] != u) {
+            // path halving: point every other node to its grandparent
+            parent[u] = parent[parent[u]];
+            u = parent[u];
+        }
+        return u;
+    }
+
+    /** Merges the components of users a and b, after one started following the other. */
+    public void union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) {
+            return;
+        }
+        if (rank[ra] < rank[rb]) {
+            parent[ra] = rb;
+        } else if (rank[ra] > rank[rb]) {
+            parent[rb] = ra;
+        } else {
+            parent[rb] = ra;
+            rank[ra]++;
+        }
+        count--;
+    }
+
+    /** Recomputes the components of the users from their followees, in parallel. */
+    public void recompute(IdLists followees) {
+        int n = userCount;
+        AtomicIntegerArray links = new AtomicIntegerArray(n);
+        for (int u = 0; u < n; u++) {
+            links.set(u, u);
+        }
+        IntStream.range(0, n).parallel().forEach(u -> {
+            int[] f = followees.array(u);
+            for (int i = followees.size(u) - 1; i >= 0; i--) {
+                link(links, u, f[i]);
+            }
+        });
+        // point every user straight to its root
+        IntStream.range(0, n).parallel().forEach(u -> {
+            int root = u;
+            while (links.get(root) != root) root = links.get(root);
+            parent[u] = root;
+        });
+        Arrays.fill(rank, 0, n, (byte) 0);
+        count = 0;
+        for (int u = 0; u < n; u++) {
+            if (parent[u] == u) {
+                count++;
+            } else {
+                rank[parent[u]] = 1;
+            }
+        }
+    }
+
+    // links the roots of a and b, the higher id under the lower, retrying if another thread got there first
+    private static void link(AtomicIntegerArray links, int a, int b) {
+        while (true) {
+            while (links.get(a) != a) a = links.get(a);
+            while (links.get(b) != b) b = links.get(b);
+            if (a == b) {
+                return;
+            }
+            int low = Math.min(a, b);
+            int high = Math.max(a, b);
+            if (links.compareAndSet(high, high, low)) {
+                return;
+            }
+        }
+    }
+
+    /** Unit tests incremental unions and parallel recomputation against each other. */
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        int n = 10000;
+        IdLists followees = new IdLists(n);
+        ConnectedComponents incremental = new ConnectedComponents(n);
+        ConnectedComponents recomputed = new ConnectedComponents(n);
+        for (int u = 0; u < n; u++) {
+            incremental.addUser();
+            recomputed.addUser();
+        }
+        for (int step = 0; step < 8000; step++) {
+            int a = random.nextInt(n);
+            int b = random.nextInt(n);
+            if (a != b && !followees.contains(a, b)) {
+                followees.add(a, b);
+                incremental.union(a, b);
+            }
+            if (step % 1000 == 999) {
+                recomputed.recompute(followees);
+                if (recomputed.count() != incremental.count()) {
+                    throw new AssertionError(recomputed.count() + " components, not " + incremental.count());
+                }
+                for (int u = 0; u < n; u++) {
+                    int v = random.nextInt(n);
+                    boolean same = incremental.find(u) == incremental.find(v);
+                    if (same != (recomputed.find(u) == recomputed.find(v))) {
+                        throw new AssertionError(u + " and " + v + " are in different components");
+                    }
+                }
+            }
+        }
+        System.out.println(n + " users in " + incremental.count() + " components either way");
+    }
+}
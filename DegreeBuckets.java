@@ -0,0 +1,107 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The users of a network grouped by number of followees, maintained as
+ * follows change: bucket d holds the ids of the users who follow exactly d
+ * users. Moving a user between buckets takes O(1); the order of the ids
+ * within a bucket is arbitrary.
+ */
+public class DegreeBuckets {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[][] buckets = new int[0][];
+    private int[] sizes = new int[0];
+    private final int[] degree;     // degree[id] = number of followees of user id
+    private final int[] position;   // position[id] = index of id in its bucket
+
+    /** Creates the buckets of a network of up to maxUserCount users, holding none. */
+    public DegreeBuckets(int maxUserCount) {
+        degree = new int[maxUserCount];
+        position = new int[maxUserCount];
+    }
+
+    /** Returns the number of buckets (one more than the largest degree so far). */
+    public int bucketCount() {
+        return buckets.length;
+    }
+
+    /** Returns the number of users in the bucket of the given degree. */
+    public int size(int d) {
+        return (d < sizes.length) ? sizes[d] : 0;
+    }
+
+    /**
+     * Returns the array that holds the bucket of the given degree; only its
+     * first size(d) entries are meaningful. Don't modify it.
+     */
+    public int[] bucket(int d) {
+        return (d < buckets.length) ? buckets[d] : EMPTY;
+    }
+
+    /** Returns the number of followees of the given user. */
+    public int degree(int user) {
+        return degree[user];
+    }
+
+    /** Adds a user with the given number of followees. */
+    public void add(int user, int d) {
+        degree[user] = d;
+        insert(user);
+    }
+
+    /** Moves the given user to the bucket of degree d. */
+    public void setDegree(int user, int d) {
+        if (degree[user] == d) return;
+        // move the last user of the old bucket into this user's place
+        int old = degree[user];
+        int last = buckets[old][--sizes[old]];
+        buckets[old][position[user]] = last;
+        position[last] = position[user];
+        degree[user] = d;
+        insert(user);
+    }
+
+    private void insert(int user) {
+        int d = degree[user];
+        if (d >= buckets.length) {
+            int count = Math.max(d + 1, 2 * buckets.length);
+            int from = buckets.length;
+            buckets = Arrays.copyOf(buckets, count);
+            sizes = Arrays.copyOf(sizes, count);
+            for (int b = from; b < count; b++) buckets[b] = EMPTY;
+        }
+        if (sizes[d] == buckets[d].length) {
+            buckets[d] = Arrays.copyOf(buckets[d], Math.max(4, 2 * sizes[d]));
+        }
+        position[user] = sizes[d];
+        buckets[d][sizes[d]++] = user;
+    }
+
+    /** Unit tests the buckets against the degrees they were given. */
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        int n = 100;
+        DegreeBuckets buckets = new DegreeBuckets(n);
+        int[] expected = new int[n];
+        for (int i = 0; i < n; i++) buckets.add(i, 0);
+        for (int step = 0; step < 100000; step++) {
+            int user = random.nextInt(n);
+            expected[user] = random.nextInt(12);
+            buckets.setDegree(user, expected[user]);
+        }
+        int[] seen = new int[n];
+        for (int d = 0; d < buckets.bucketCount(); d++) {
+            for (int i = 0; i < buckets.size(d); i++) {
+                int user = buckets.bucket(d)[i];
+                if (expected[user] != d) throw new AssertionError(user + " is in bucket " + d);
+                seen[user]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            if (seen[i] != 1) throw new AssertionError(i + " is in " + seen[i] + " buckets");
+        }
+        System.out.println("All " + n + " users are in the bucket of their degree");
+    }
+}
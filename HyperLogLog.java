@@ -0,0 +1,100 @@
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog sketch: an estimate of the number of distinct items added,
+ * in 2^precision bytes whatever their number, with a standard error of
+ * about 1.04 / sqrt(2^precision) (2.3% for precision 11, 2 KB).
+ *
+ * Each item is hashed to 64 bits; the first precision bits pick a register,
+ * which keeps the largest number of leading zeros (plus one) seen in the
+ * remaining bits. Sketches of the same precision merge by taking the
+ * maximum of each register, so the sketch of a union is the merge of the
+ * sketches, but items can't be removed.
+ */
+public class HyperLogLog {
+
+    private final int precision;
+    private final byte[] registers;
+
+    /** Creates an empty sketch of 2^precision registers, for precision between 4 and 18. */
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /** Returns the precision of this sketch. */
+    public int precision() {
+        return precision;
+    }
+
+    /** Returns a well-mixed 64-bit hash of the given id, for add(). */
+    public static long hash(int id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    /** Adds the item with the given 64-bit hash. */
+    public void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // the sentinel bit caps the rank at 64 - precision + 1
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) registers[index] = rank;
+    }
+
+    /** Adds all the items of the given sketch to this one. */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("can't merge precision " + other.precision + " into " + precision);
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) registers[i] = other.registers[i];
+        }
+    }
+
+    /** Removes all items. */
+    public void clear() {
+        Arrays.fill(registers, (byte) 0);
+    }
+
+    /** Returns the estimated number of distinct items added. */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte r : registers) {
+            sum += Double.longBitsToDouble((1023L - r) << 52);   // 2^-r
+            if (r == 0) zeros++;
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // few items: count the empty registers instead (linear counting)
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /** Unit tests the estimates of sketches and of their merges. */
+    public static void main(String[] args) {
+        int precision = 11;
+        for (int n : new int[] {0, 1, 10, 1000, 100000, 1000000}) {
+            HyperLogLog a = new HyperLogLog(precision);
+            HyperLogLog b = new HyperLogLog(precision);
+            for (int i = 0; i < n; i++) {
+                a.add(hash(i));
+                b.add(hash(n / 2 + i));    // half of them shared with a
+            }
+            a.merge(b);
+            long expected = n + n / 2;
+            double error = (expected == 0) ? a.estimate() : Math.abs(a.estimate() - expected) / (double) expected;
+            if (error > 0.1) throw new AssertionError(expected + " items estimated as " + a.estimate());
+            System.out.printf("%8d items estimated as %8d (%.1f%% off)%n", expected, a.estimate(), 100 * error);
+        }
+    }
+}
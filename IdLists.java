@@ -0,0 +1,85 @@
+import java.util.Arrays;
+
+/**
+ * A list of int ids for each of a number of users, such as the ids of the
+ * followers of every user of a network. Each list starts empty and grows as
+ * needed; ids in a list keep the order in which they were added.
+ */
+public class IdLists {
+
+    private static final int[] EMPTY = new int[0];
+
+    private int[][] lists;
+    private int[] sizes;
+
+    /** Creates an empty list for each of the given number of users. */
+    public IdLists(int userCount) {
+        lists = new int[userCount][];
+        sizes = new int[userCount];
+        for (int i = 0; i < userCount; i++) lists[i] = EMPTY;
+    }
+
+    /** Returns the number of lists. */
+    public int userCount() {
+        return sizes.length;
+    }
+
+    /** Returns the number of ids in the list of the given user. */
+    public int size(int user) {
+        return sizes[user];
+    }
+
+    /** Returns the i-th id in the list of the given user. */
+    public int get(int user, int i) {
+        return lists[user][i];
+    }
+
+    /**
+     * Returns the array that holds the list of the given user; only its
+     * first size(user) entries are meaningful. Don't modify it.
+     */
+    public int[] array(int user) {
+        return lists[user];
+    }
+
+    /** Appends the given id to the list of the given user. */
+    public void add(int user, int id) {
+        int[] list = lists[user];
+        if (sizes[user] == list.length) {
+            list = Arrays.copyOf(list, Math.max(4, 2 * list.length));
+            lists[user] = list;
+        }
+        list[sizes[user]++] = id;
+    }
+
+    /** Returns true if the list of the given user contains the given id. */
+    public boolean contains(int user, int id) {
+        int[] list = lists[user];
+        for (int i = sizes[user] - 1; i >= 0; i--) {
+            if (list[i] == id) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the given id from the list of the given user, keeping the order
+     * of the other ids. Returns false if the list doesn't contain it.
+     */
+    public boolean remove(int user, int id) {
+        int[] list = lists[user];
+        int size = sizes[user];
+        for (int i = 0; i < size; i++) {
+            if (list[i] == id) {
+                System.arraycopy(list, i + 1, list, i, size - i - 1);
+                sizes[user]--;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns a copy of the list of the given user. */
+    public int[] toArray(int user) {
+        return Arrays.copyOf(lists[user], sizes[user]);
+    }
+}
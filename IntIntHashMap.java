@@ -0,0 +1,171 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+/**
+ * A hash map from non-negative int keys to int values, without boxing.
+ * Uses open addressing with linear probing; removals shift the following
+ * entries back, so lookups never have to skip deleted slots.
+ * To iterate over the keys: for (int s = 0; s < map.slots(); s++)
+ * { if (map.keyAt(s) >= 0) ... }.
+ */
+public class IntIntHashMap {
+
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int size;
+    private int mask;
+
+    /** Creates an empty map. */
+    public IntIntHashMap() {
+        this(8);
+    }
+
+    /** Creates an empty map with room for the given number of keys before it grows. */
+    public IntIntHashMap(int expectedSize) {
+        int capacity = 8;
+        while (capacity * 3 / 4 < expectedSize) capacity *= 2;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, FREE);
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    // spreads the bits of the key, so consecutive ids don't cluster
+    private int slotOf(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** Returns the number of keys in this map. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns true if this map has no keys. */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Returns the value of the given key, or 0 if the key isn't in this map. */
+    public int get(int key) {
+        for (int s = slotOf(key); keys[s] != FREE; s = (s + 1) & mask) {
+            if (keys[s] == key) return values[s];
+        }
+        return 0;
+    }
+
+    /** Returns true if the given key is in this map. */
+    public boolean containsKey(int key) {
+        for (int s = slotOf(key); keys[s] != FREE; s = (s + 1) & mask) {
+            if (keys[s] == key) return true;
+        }
+        return false;
+    }
+
+    /** Sets the value of the given key. */
+    public void put(int key, int value) {
+        if (key < 0) throw new IllegalArgumentException("key must be non-negative: " + key);
+        int s = slotOf(key);
+        for (; keys[s] != FREE; s = (s + 1) & mask) {
+            if (keys[s] == key) {
+                values[s] = value;
+                return;
+            }
+        }
+        keys[s] = key;
+        values[s] = value;
+        if (++size > keys.length * 3 / 4) grow();
+    }
+
+    /**
+     * Adds delta to the value of the given key (0 if absent), and returns the
+     * new value. A key whose value drops to 0 is removed from the map.
+     */
+    public int addTo(int key, int delta) {
+        int value = get(key) + delta;
+        if (value == 0) remove(key);
+        else put(key, value);
+        return value;
+    }
+
+    /** Removes the given key; returns false if it wasn't in this map. */
+    public boolean remove(int key) {
+        int s = slotOf(key);
+        for (; keys[s] != key; s = (s + 1) & mask) {
+            if (keys[s] == FREE) return false;
+        }
+        // shift back the entries that probed past the freed slot
+        int free = s;
+        for (int next = (s + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            int home = slotOf(keys[next]);
+            // move the entry unless its home lies cyclically in (free, next]
+            boolean stays = (free <= next) ? (free < home && home <= next) : (free < home || home <= next);
+            if (!stays) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        keys[free] = FREE;
+        size--;
+        return true;
+    }
+
+    /** Removes all keys. */
+    public void clear() {
+        Arrays.fill(keys, FREE);
+        size = 0;
+    }
+
+    /** Returns the number of slots, for iterating with keyAt() and valueAt(). */
+    public int slots() {
+        return keys.length;
+    }
+
+    /** Returns the key in the given slot, or -1 if the slot is free. */
+    public int keyAt(int slot) {
+        return keys[slot];
+    }
+
+    /** Returns the value in the given slot. */
+    public int valueAt(int slot) {
+        return values[slot];
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(2 * oldKeys.length);
+        for (int s = 0; s < oldKeys.length; s++) {
+            if (oldKeys[s] != FREE) put(oldKeys[s], oldValues[s]);
+        }
+    }
+
+    /** Unit tests the map against java.util.HashMap. */
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        HashMap<Integer, Integer> expected = new HashMap<>();
+        IntIntHashMap map = new IntIntHashMap();
+        for (int i = 0; i < 200000; i++) {
+            int key = random.nextInt(500);
+            int delta = random.nextInt(3) - 1;
+            int value = map.addTo(key, delta);
+            int e = expected.getOrDefault(key, 0) + delta;
+            if (e == 0) expected.remove(key);
+            else expected.put(key, e);
+            if (value != e) throw new AssertionError("wrong value for " + key);
+        }
+        for (int key = 0; key < 500; key++) {
+            if (map.get(key) != expected.getOrDefault(key, 0)) throw new AssertionError("wrong value for " + key);
+        }
+        System.out.println("size " + map.size() + " (expected " + expected.size() + ")");
+    }
+}
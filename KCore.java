@@ -0,0 +1,182 @@
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.stream.IntStream;
+
+/**
+ * The k-core decomposition of the follow graph, with follows taken in
+ * either direction: the k-core is the largest group of users who each have
+ * at least k neighbours within the group, and the core number of a user is
+ * the largest k whose k-core holds it. A high core number takes many
+ * well-connected neighbours, not just many followers, so it is harder to
+ * fake than a follower count.
+ *
+ * sequential() peels the users in order of degree with a bucket queue
+ * (Batagelj and Zaversnik), in O(users + follows) time. parallel() peels a
+ * level at a time: all users of remaining degree k are removed at once,
+ * in parallel, decrementing the degree of their neighbours with
+ * compare-and-set down to k, and those that reach k join the level; that
+ * takes as many rounds as levels, but each is parallel.
+ *
+ * Both work on the undirected CompactGraph, in int arrays of the size of
+ * the graph, so they scale to whatever graph fits in memory.
+ */
+public class KCore {
+
+    // don't instantiate
+    private KCore() { }
+
+    /** Returns the core number of every user of the given graph, peeling sequentially. */
+    public static int[] sequential(CompactGraph graph) {
+        CompactGraph g = graph.undirected();
+        int n = g.nodeCount();
+        int[] neighbours = g.outTargets();
+        int[] degree = new int[n];
+        int maxDegree = 0;
+        for (int u = 0; u < n; u++) {
+            degree[u] = g.outDegree(u);
+            maxDegree = Math.max(maxDegree, degree[u]);
+        }
+        // sort the users by degree: bucket d is order[start[d] .. start[d + 1])
+        int[] start = new int[maxDegree + 2];
+        for (int u = 0; u < n; u++) {
+            start[degree[u] + 1]++;
+        }
+        for (int d = 0; d <= maxDegree; d++) {
+            start[d + 1] += start[d];
+        }
+        int[] order = new int[n];
+        int[] position = new int[n];
+        int[] next = start.clone();
+        for (int u = 0; u < n; u++) {
+            position[u] = next[degree[u]]++;
+            order[position[u]] = u;
+        }
+        // peel in order; lowering a neighbour's degree moves it to the front of its bucket
+        for (int i = 0; i < n; i++) {
+            int u = order[i];
+            for (int e = g.outStart(u); e < g.outStart(u + 1); e++) {
+                int v = neighbours[e];
+                if (degree[v] > degree[u]) {
+                    int d = degree[v];
+                    int first = order[start[d]];
+                    if (first != v) {
+                        order[position[v]] = first;
+                        position[first] = position[v];
+                        order[start[d]] = v;
+                        position[v] = start[d];
+                    }
+                    start[d]++;
+                    degree[v]--;
+                }
+            }
+        }
+        return degree;
+    }
+
+    /** Returns the core number of every user of the given graph, peeling levels in parallel. */
+    public static int[] parallel(CompactGraph graph) {
+        CompactGraph g = graph.undirected();
+        int n = g.nodeCount();
+        int[] neighbours = g.outTargets();
+        AtomicIntegerArray degree = new AtomicIntegerArray(n);
+        int[] core = new int[n];
+        IntStream.range(0, n).parallel().forEach(u -> {
+            degree.set(u, g.outDegree(u));
+            core[u] = -1;
+        });
+        int[] frontier = new int[n];
+        int[] nextFrontier = new int[n];
+        AtomicInteger nextSize = new AtomicInteger();
+        int remaining = n;
+        int k = 0;
+        while (remaining > 0) {
+            int level = k;
+            int[] found = IntStream.range(0, n).parallel()
+                .filter(u -> core[u] < 0 && degree.get(u) <= level).toArray();
+            if (found.length == 0) {
+                k++;
+                continue;
+            }
+            int size = found.length;
+            System.arraycopy(found, 0, frontier, 0, size);
+            while (size > 0) {
+                int[] current = frontier;
+                int[] next = nextFrontier;
+                for (int i = 0; i < size; i++) {
+                    core[current[i]] = level;
+                }
+                remaining -= size;
+                nextSize.set(0);
+                IntStream.range(0, size).parallel().forEach(i -> {
+                    int u = current[i];
+                    for (int e = g.outStart(u); e < g.outStart(u + 1); e++) {
+                        int v = neighbours[e];
+                        while (true) {
+                            int d = degree.get(v);
+                            if (d <= level) break;
+                            if (degree.compareAndSet(v, d, d - 1)) {
+                                if (d - 1 == level) next[nextSize.getAndIncrement()] = v;
+                                break;
+                            }
+                        }
+                    }
+                });
+                size = nextSize.get();
+                frontier = next;
+                nextFrontier = current;
+            }
+            k++;
+        }
+        return core;
+    }
+
+    /** Returns the ids of the k users with the highest core numbers, best first, ties going to the lower id. */
+    public static int[] top(int[] core, int k) {
+        TopK top = new TopK(k);
+        for (int u = 0; u < core.length; u++) {
+            top.offer(u, core[u]);
+        }
+        return top.drain(null);
+    }
+
+    /**
+     * Checks the parallel decomposition against the sequential one on a
+     * random graph of args[0] users (default 1000000) following args[1]
+     * random users each (default 10), and times both.
+     */
+    public static void main(String[] args) {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        int degree = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+        Random random = new Random(1);
+        IdLists followees = new IdLists(n);
+        IdLists followers = new IdLists(n);
+        for (int u = 0; u < n; u++) {
+            // a skewed choice of followees, so that core numbers vary
+            int count = 1 + random.nextInt(2 * degree);
+            for (int i = 0; i < count; i++) {
+                int v = (int) (n * Math.pow(random.nextDouble(), 3));
+                if (v != u && !followees.contains(u, v)) {
+                    followees.add(u, v);
+                    followers.add(v, u);
+                }
+            }
+        }
+        CompactGraph graph = new CompactGraph(followees, followers, n);
+        graph.undirected();
+        long start = System.nanoTime();
+        int[] expected = sequential(graph);
+        long middle = System.nanoTime();
+        int[] actual = parallel(graph);
+        long end = System.nanoTime();
+        int maxCore = 0;
+        for (int u = 0; u < n; u++) {
+            if (actual[u] != expected[u]) {
+                throw new AssertionError(u + " has core number " + expected[u] + ", not " + actual[u]);
+            }
+            maxCore = Math.max(maxCore, expected[u]);
+        }
+        System.out.printf("%d users, %d follows: max core %d, sequential %.0f ms, parallel %.0f ms%n",
+                          n, graph.edgeCount(), maxCore, (middle - start) / 1e6, (end - middle) / 1e6);
+    }
+}
@@ -0,0 +1,181 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Communities of the follow graph, with follows taken in either direction,
+ * found by label propagation: every user starts in a community of its own,
+ * then users repeatedly join the community most common among their
+ * neighbours, until few of them still move. Dense groups of users end up
+ * sharing a community, in near-linear time per round.
+ *
+ * Each round visits the users in a new random order, in batches of
+ * BATCH_SIZE: the users of a batch are updated in parallel from the labels
+ * at the start of the batch, and each batch sees the updates of the batches
+ * before it. Ties keep the current label if it is among the most common,
+ * and otherwise go to the lowest. So the result only depends on the graph
+ * and the seed, not on the number of threads.
+ */
+public class LabelPropagation {
+
+    private static final int BATCH_SIZE = 4096;
+
+    private final int[] communities;
+    private final int[] sizes;
+    private final int iterations;
+
+    private LabelPropagation(int[] communities, int[] sizes, int iterations) {
+        this.communities = communities;
+        this.sizes = sizes;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Finds the communities of the given graph, stopping after the first
+     * round in which fewer than the given fraction of the users changed
+     * community, or after maxIterations rounds.
+     */
+    public static LabelPropagation run(CompactGraph graph, long seed, double threshold, int maxIterations) {
+        CompactGraph g = graph.undirected();
+        int n = g.nodeCount();
+        int[] label = new int[n];
+        int[] order = new int[n];
+        for (int u = 0; u < n; u++) {
+            label[u] = u;
+            order[u] = u;
+        }
+        int[] updated = new int[n];
+        ThreadLocal<int[]> scratch = ThreadLocal.withInitial(() -> new int[16]);
+        Random random = new Random(seed);
+        int iteration = 0;
+        while (iteration < maxIterations) {
+            iteration++;
+            shuffle(order, random);
+            long changed = 0;
+            for (int from = 0; from < n; from += BATCH_SIZE) {
+                int to = Math.min(n, from + BATCH_SIZE);
+                IntStream.range(from, to).parallel().forEach(i -> {
+                    int u = order[i];
+                    updated[u] = mostCommonLabel(g, u, label, scratch);
+                });
+                for (int i = from; i < to; i++) {
+                    int u = order[i];
+                    if (updated[u] != label[u]) {
+                        label[u] = updated[u];
+                        changed++;
+                    }
+                }
+            }
+            if (changed < threshold * n) {
+                break;
+            }
+        }
+        // number the communities 0, 1, ... in the order of their first users
+        int[] number = new int[n];
+        Arrays.fill(number, -1);
+        int count = 0;
+        int[] communities = new int[n];
+        for (int u = 0; u < n; u++) {
+            if (number[label[u]] < 0) number[label[u]] = count++;
+            communities[u] = number[label[u]];
+        }
+        int[] sizes = new int[count];
+        for (int u = 0; u < n; u++) {
+            sizes[communities[u]]++;
+        }
+        return new LabelPropagation(communities, sizes, iteration);
+    }
+
+    // the most common label among the neighbours of u; its own if it has none
+    private static int mostCommonLabel(CompactGraph g, int u, int[] label, ThreadLocal<int[]> scratch) {
+        int degree = g.outDegree(u);
+        if (degree == 0) {
+            return label[u];
+        }
+        int[] labels = scratch.get();
+        if (labels.length < degree) {
+            labels = new int[Integer.highestOneBit(degree) << 1];
+            scratch.set(labels);
+        }
+        int[] neighbours = g.outTargets();
+        for (int i = 0, e = g.outStart(u); i < degree; i++, e++) {
+            labels[i] = label[neighbours[e]];
+        }
+        Arrays.sort(labels, 0, degree);
+        int best = label[u];
+        int bestCount = 0;
+        int ownCount = 0;
+        for (int i = 0; i < degree; ) {
+            int j = i;
+            while (j < degree && labels[j] == labels[i]) j++;
+            if (j - i > bestCount) {
+                best = labels[i];
+                bestCount = j - i;
+            }
+            if (labels[i] == label[u]) ownCount = j - i;
+            i = j;
+        }
+        return (ownCount == bestCount) ? label[u] : best;
+    }
+
+    private static void shuffle(int[] a, Random random) {
+        for (int i = a.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = a[i];
+            a[i] = a[j];
+            a[j] = swap;
+        }
+    }
+
+    /** Returns the community of every user, numbered from 0 in the order of their first users. Don't modify it. */
+    public int[] communities() {
+        return communities;
+    }
+
+    /** Returns the community of the given user. */
+    public int communityOf(int u) {
+        return communities[u];
+    }
+
+    /** Returns the number of communities. */
+    public int communityCount() {
+        return sizes.length;
+    }
+
+    /** Returns the number of users of each community. Don't modify it. */
+    public int[] sizes() {
+        return sizes;
+    }
+
+    /** Returns the number of users of the largest community, or 0 if there are none. */
+    public int largestSize() {
+        int largest = 0;
+        for (int size : sizes) {
+            largest = Math.max(largest, size);
+        }
+        return largest;
+    }
+
+    /** Returns the number of communities of a single user. */
+    public int singletonCount() {
+        int count = 0;
+        for (int size : sizes) {
+            if (size == 1) count++;
+        }
+        return count;
+    }
+
+    /** Returns the number of rounds the propagation took. */
+    public int iterations() {
+        return iterations;
+    }
+
+    /** Returns the number of communities and statistics of their sizes, e.g. for logging. */
+    public String toString() {
+        int[] sorted = sizes.clone();
+        Arrays.sort(sorted);
+        int median = (sorted.length == 0) ? 0 : sorted[sorted.length / 2];
+        return communityCount() + " communities after " + iterations + " rounds: largest " + largestSize()
+               + " users, median " + median + ", " + singletonCount() + " single users";
+    }
+}
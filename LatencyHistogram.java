@@ -0,0 +1,112 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies (in nanoseconds), in the style of HdrHistogram.
+ *
+ * Values below 2^SUB_BITS have a bucket each; above that, every power of two
+ * is split into 2^SUB_BITS equal buckets, so any recorded value is known to
+ * within about 3%, from 1 ns up to Long.MAX_VALUE, in under 2000 buckets.
+ * Recording is lock-free (one atomic increment, plus two striped adders), so
+ * many threads can record into the same histogram without contention.
+ * Reads are not atomic snapshots: a percentile computed while other threads
+ * record may mix values from slightly different moments.
+ */
+public class LatencyHistogram {
+
+    // each power of two is split into 2^SUB_BITS buckets
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /** Records one value, in nanoseconds. Negative values are recorded as 0. */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        total.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /** Returns the number of recorded values. */
+    public long count() {
+        return total.sum();
+    }
+
+    /** Returns the mean of the recorded values (ns), or 0 if there are none. */
+    public double mean() {
+        long n = total.sum();
+        return (n == 0) ? 0 : (double) sum.sum() / n;
+    }
+
+    /** Returns the largest recorded value (ns), or 0 if there are none. */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value (ns) below which the given fraction (0 to 1) of the
+     * recorded values fall, rounded up to the top of its bucket
+     * (and never above max()). Returns 0 if there are no values.
+     */
+    public long percentile(double fraction) {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) n += counts.get(i);
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(fraction * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestValueIn(i), max());
+        }
+        return max();
+    }
+
+    /** Forgets all recorded values. */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        total.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    // the bucket of a non-negative value
+    static int bucketOf(long value) {
+        if (value < SUB_COUNT) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        long mantissa = value >>> (exponent - SUB_BITS);    // in [SUB_COUNT, 2 * SUB_COUNT)
+        return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) (mantissa - SUB_COUNT);
+    }
+
+    // the largest value that falls in the given bucket
+    static long highestValueIn(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int exponent = (bucket >> SUB_BITS) + SUB_BITS - 1;
+        long mantissa = (bucket & (SUB_COUNT - 1)) + SUB_COUNT;
+        int shift = exponent - SUB_BITS;
+        long lowest = mantissa << shift;
+        return lowest + ((1L << shift) - 1);
+    }
+
+    /** Unit tests the bucket boundaries and percentiles. */
+    public static void main(String[] args) {
+        for (long v : new long[] {0, 1, 31, 32, 33, 63, 64, 65, 1000, 123456789, Long.MAX_VALUE}) {
+            int b = bucketOf(v);
+            long high = highestValueIn(b);
+            long low = (b == 0) ? 0 : highestValueIn(b - 1) + 1;
+            System.out.println(v + " -> bucket " + b + " [" + low + ", " + high + "] "
+                               + (low <= v && v <= high ? "ok" : "WRONG"));
+        }
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) h.record(i * 1000L);
+        System.out.println("count " + h.count() + ", mean " + h.mean() + ", max " + h.max());
+        System.out.println("p50 " + h.percentile(0.5) + " (expected ~500000), p99 " + h.percentile(0.99)
+                           + " (expected ~990000)");
+    }
+}
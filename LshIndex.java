@@ -0,0 +1,142 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+/**
+ * A locality-sensitive hashing index over the MinHash signatures of the
+ * followee sets of a network's users, for finding similar users without
+ * comparing against everyone.
+ *
+ * The first bands * rows positions of every signature are cut into bands of
+ * `rows` positions, and users whose signatures agree on a whole band share
+ * a bucket of that band. Two users with Jaccard similarity s share at least
+ * one bucket with probability 1 - (1 - s^rows)^bands, an S-shaped curve
+ * that is steepest around (1 / bands)^(1 / rows): more rows mean fewer, more
+ * similar candidates; more bands mean fewer missed ones.
+ *
+ * Users are identified by their ids in the network; users who follow nobody
+ * aren't indexed. update() re-indexes one user after its signature changed;
+ * rebuild() re-indexes everyone, in parallel.
+ */
+public class LshIndex {
+
+    private final MinHashSketches sketches;
+    private final int bands;
+    private final int rows;
+
+    // buckets[band] maps a band key to the ids of the users with that key
+    private final HashMap<Long, int[]>[] buckets;
+
+    // keys[user] = the band keys under which user is indexed, or null
+    private final long[][] keys;
+
+    /** Creates an empty index over the given signatures, for up to maxUserCount users. */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public LshIndex(MinHashSketches sketches, int bands, int rows, int maxUserCount) {
+        if (bands <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("bands and rows must be positive: " + bands + ", " + rows);
+        }
+        if (bands * rows > sketches.size()) {
+            throw new IllegalArgumentException(bands + " bands of " + rows + " rows need signatures of "
+                                               + bands * rows + " positions, not " + sketches.size());
+        }
+        this.sketches = sketches;
+        this.bands = bands;
+        this.rows = rows;
+        this.buckets = new HashMap[bands];
+        for (int b = 0; b < bands; b++) buckets[b] = new HashMap<>();
+        this.keys = new long[maxUserCount][];
+    }
+
+    /** Returns the MinHash signatures this index is built on. */
+    public MinHashSketches sketches() {
+        return sketches;
+    }
+
+    // the key of each band of the user's signature, or null if it follows nobody
+    private long[] bandKeys(int user) {
+        int[] sig = sketches.signature(user);
+        if (sig == null) return null;
+        long[] result = new long[bands];
+        for (int b = 0; b < bands; b++) {
+            long h = 0xCBF29CE484222325L;
+            for (int r = b * rows; r < (b + 1) * rows; r++) {
+                h = (h ^ sig[r]) * 0x100000001B3L;
+            }
+            result[b] = h;
+        }
+        return result;
+    }
+
+    /** Re-indexes the given user after its signature changed. */
+    public void update(int user) {
+        long[] old = keys[user];
+        long[] now = bandKeys(user);
+        for (int b = 0; b < bands; b++) {
+            if (old != null && now != null && old[b] == now[b]) continue;
+            if (old != null) removeFrom(b, old[b], user);
+            if (now != null) addTo(b, now[b], user);
+        }
+        keys[user] = now;
+    }
+
+    /**
+     * Re-indexes the first userCount users from scratch: their band keys are
+     * computed in parallel, and then the bands are filled in parallel.
+     */
+    public void rebuild(int userCount) {
+        IntStream.range(0, userCount).parallel().forEach(u -> keys[u] = bandKeys(u));
+        IntStream.range(0, bands).parallel().forEach(b -> {
+            buckets[b].clear();
+            for (int u = 0; u < userCount; u++) {
+                if (keys[u] != null) addTo(b, keys[u][b], u);
+            }
+        });
+    }
+
+    // a bucket is an int[] whose first element is the number of ids after it
+    private void addTo(int band, long key, int user) {
+        int[] bucket = buckets[band].get(key);
+        if (bucket == null) {
+            bucket = new int[4];
+        } else if (bucket[0] + 1 == bucket.length) {
+            bucket = Arrays.copyOf(bucket, 2 * bucket.length);
+        }
+        bucket[++bucket[0]] = user;
+        buckets[band].put(key, bucket);
+    }
+
+    private void removeFrom(int band, long key, int user) {
+        int[] bucket = buckets[band].get(key);
+        if (bucket == null) return;
+        for (int i = 1; i <= bucket[0]; i++) {
+            if (bucket[i] == user) {
+                bucket[i] = bucket[bucket[0]--];
+                break;
+            }
+        }
+        if (bucket[0] == 0) buckets[band].remove(key);
+    }
+
+    /**
+     * Returns the ids of the users that share at least one bucket with the
+     * given user (not including itself), each once, in no particular order.
+     */
+    public int[] candidates(int user) {
+        long[] userKeys = keys[user];
+        if (userKeys == null) return new int[0];
+        IntIntHashMap seen = new IntIntHashMap();
+        for (int b = 0; b < bands; b++) {
+            int[] bucket = buckets[b].get(userKeys[b]);
+            for (int i = 1; bucket != null && i <= bucket[0]; i++) {
+                if (bucket[i] != user) seen.put(bucket[i], 1);
+            }
+        }
+        int[] result = new int[seen.size()];
+        int n = 0;
+        for (int s = 0; s < seen.slots(); s++) {
+            if (seen.keyAt(s) >= 0) result[n++] = seen.keyAt(s);
+        }
+        return result;
+    }
+}
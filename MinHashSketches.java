@@ -0,0 +1,110 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * MinHash signatures of the followee sets of the users of a network, for
+ * estimating how similar two users' followees are in O(k) time, whatever
+ * their number of followees.
+ *
+ * Each of k hash functions maps a followee id to an int, and the signature
+ * of a user holds, for each function, the minimum over the user's followees.
+ * Two users agree on a signature position with probability equal to the
+ * Jaccard similarity |A and B| / |A or B| of their followee sets, so the
+ * fraction of agreeing positions estimates it, with a standard error of
+ * about 1 / sqrt(k).
+ *
+ * A follow only lowers some minimums, so it updates a signature in O(k);
+ * an unfollow recomputes the signature from the remaining followees.
+ */
+public class MinHashSketches {
+
+    private static final int EMPTY = Integer.MAX_VALUE;
+
+    private final int k;
+    private final int[] multipliers;
+    private final int[] offsets;
+    private final int[][] signatures;   // signatures[user], or null if user follows nobody
+
+    /** Creates empty signatures of k positions for up to maxUserCount users. */
+    public MinHashSketches(int k, long seed, int maxUserCount) {
+        if (k <= 0) throw new IllegalArgumentException("k must be positive: " + k);
+        this.k = k;
+        Random random = new Random(seed);
+        multipliers = new int[k];
+        offsets = new int[k];
+        for (int i = 0; i < k; i++) {
+            multipliers[i] = random.nextInt() | 1;
+            offsets[i] = random.nextInt();
+        }
+        signatures = new int[maxUserCount][];
+    }
+
+    /** Returns the number of positions of a signature. */
+    public int size() {
+        return k;
+    }
+
+    // the i-th hash of the given id
+    private int hash(int i, int id) {
+        int h = id * multipliers[i] + offsets[i];
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        return h ^ (h >>> 13);
+    }
+
+    /** Returns the signature of the given user, or null if it follows nobody. Don't modify it. */
+    public int[] signature(int user) {
+        return signatures[user];
+    }
+
+    /** Updates the signature of user a after it started following user b. */
+    public void followed(int a, int b) {
+        int[] sig = signatures[a];
+        if (sig == null) {
+            sig = new int[k];
+            Arrays.fill(sig, EMPTY);
+            signatures[a] = sig;
+        }
+        for (int i = 0; i < k; i++) {
+            int h = hash(i, b);
+            if (h < sig[i]) sig[i] = h;
+        }
+    }
+
+    /**
+     * Recomputes the signature of the given user from its followees
+     * (the first count ids of the given array), e.g. after an unfollow.
+     */
+    public void recompute(int user, int[] followees, int count) {
+        signatures[user] = null;
+        for (int i = 0; i < count; i++) {
+            followed(user, followees[i]);
+        }
+    }
+
+    /**
+     * Returns the estimated Jaccard similarity of the followee sets of users
+     * a and b: the fraction of signature positions on which they agree.
+     * Returns 0 if either follows nobody.
+     */
+    public double jaccard(int a, int b) {
+        int[] sa = signatures[a];
+        int[] sb = signatures[b];
+        if (sa == null || sb == null) return 0;
+        int same = 0;
+        for (int i = 0; i < k; i++) {
+            if (sa[i] == sb[i]) same++;
+        }
+        return (double) same / k;
+    }
+
+    /**
+     * Returns the estimated number of followees shared by users a and b,
+     * who follow sizeA and sizeB users: since |A or B| = |A| + |B| - |A and B|,
+     * |A and B| = J (|A| + |B|) / (1 + J) for the Jaccard similarity J.
+     */
+    public double overlap(int a, int b, int sizeA, int sizeB) {
+        double j = jaccard(a, b);
+        return j * (sizeA + sizeB) / (1 + j);
+    }
+}
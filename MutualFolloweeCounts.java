@@ -0,0 +1,130 @@
+/**
+ * The number of mutual followees of every pair of users of a network that
+ * have at least one, maintained incrementally as follows change, so that
+ * recommendWhoToFollow is a lookup instead of a scan of all users.
+ *
+ * When A starts following B, A gains one mutual followee (B) with every
+ * other follower of B, and with nobody else; unfollowing undoes that.
+ * So a follow change costs O(followers of B), and the counts take
+ * O(sum over users of followers^2) memory, which is worth it when the
+ * network answers many more recommendations than it gets follow changes.
+ *
+ * Users are identified by their ids (indices) in the network.
+ */
+public class MutualFolloweeCounts {
+
+    // counts[a] maps every user b != a that has mutual followees with a to their number
+    private final IntIntHashMap[] counts;
+
+    /** Creates the counts of a network of up to maxUserCount users, with no follows. */
+    public MutualFolloweeCounts(int maxUserCount) {
+        counts = new IntIntHashMap[maxUserCount];
+    }
+
+    /**
+     * Creates the counts of the given follows: followers.array(b) lists the
+     * followers of user b, for each of the first userCount users.
+     */
+    public MutualFolloweeCounts(int maxUserCount, IdLists followers, int userCount) {
+        this(maxUserCount);
+        for (int b = 0; b < userCount; b++) {
+            int[] f = followers.array(b);
+            int n = followers.size(b);
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    add(f[i], f[j], 1);
+                }
+            }
+        }
+    }
+
+    /** Returns the number of users followed by both user a and user b (a != b). */
+    public int get(int a, int b) {
+        return (counts[a] == null) ? 0 : counts[a].get(b);
+    }
+
+    /**
+     * Updates the counts after user a started following user b.
+     * followersOfB lists the followers of b, other than a.
+     */
+    public void followed(int a, int[] followersOfB, int size) {
+        for (int i = 0; i < size; i++) {
+            if (followersOfB[i] != a) add(a, followersOfB[i], 1);
+        }
+    }
+
+    /**
+     * Updates the counts after user a stopped following user b.
+     * followersOfB lists the remaining followers of b.
+     */
+    public void unfollowed(int a, int[] followersOfB, int size) {
+        for (int i = 0; i < size; i++) {
+            if (followersOfB[i] != a) add(a, followersOfB[i], -1);
+        }
+    }
+
+    private void add(int a, int b, int delta) {
+        map(a).addTo(b, delta);
+        map(b).addTo(a, delta);
+    }
+
+    private IntIntHashMap map(int user) {
+        if (counts[user] == null) counts[user] = new IntIntHashMap();
+        return counts[user];
+    }
+
+    /** Returns the number of users that have mutual followees with the given user. */
+    public int candidateCount(int user) {
+        return (counts[user] == null) ? 0 : counts[user].size();
+    }
+
+    /**
+     * Offers to top every user that has mutual followees with the given user,
+     * other than the users it follows, scored by their number.
+     */
+    public void offerCandidates(int user, IdLists followees, TopK top) {
+        IntIntHashMap map = counts[user];
+        if (map == null) return;
+        for (int s = 0; s < map.slots(); s++) {
+            int candidate = map.keyAt(s);
+            if (candidate >= 0 && !followees.contains(user, candidate)) {
+                top.offer(candidate, map.valueAt(s));
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the user to recommend to the given user, with the same
+     * rule as Network.recommendWhoToFollow: among the users other than user
+     * and the users it follows (followees.array(user)), the one with the most
+     * mutual followees, the lowest id winning ties; or -1 if there is no such
+     * user among the first userCount users.
+     */
+    public int recommend(int user, IdLists followees, int userCount) {
+        int best = -1;
+        int bestCount = 0;
+        IntIntHashMap map = counts[user];
+        if (map != null) {
+            for (int s = 0; s < map.slots(); s++) {
+                int candidate = map.keyAt(s);
+                if (candidate < 0) continue;
+                int count = map.valueAt(s);
+                if ((count > bestCount || (count == bestCount && candidate < best))
+                    && !followees.contains(user, candidate)) {
+                    best = candidate;
+                    bestCount = count;
+                }
+            }
+        }
+        if (best >= 0) {
+            return best;
+        }
+        // nobody has mutual followees with user: the first eligible user wins
+        for (int candidate = 0; candidate < userCount; candidate++) {
+            if (candidate != user && !followees.contains(user, candidate)) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,128 @@
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * User names stored once, as UTF-8 bytes in a few large byte[] pages, with
+ * the position and length of each in primitive arrays; names are decoded to
+ * Strings only when asked for. A String costs a header, a byte[] with its
+ * own header and a reference, and every one of them is an object the
+ * garbage collector has to mark; here a million names are a handful of
+ * objects, and usually a third of the memory.
+ *
+ * Names are identified by ids 0, 1, ... in the order they were added, like
+ * users in a network. A name can't be longer than a page once encoded; a
+ * null name is kept as null.
+ */
+public class NameDictionary {
+
+    private static final int PAGE_BITS = 20;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;      // 1 MB
+
+    private byte[][] pages = new byte[0][];
+    private int pageUsed;                 // bytes used in the last page
+    private long[] positions = new long[16];    // page index << PAGE_BITS | offset in page
+    private int[] lengths = new int[16];
+    private int size;
+
+    /** Adds the given name, and returns its id. */
+    public int add(String name) {
+        byte[] bytes = (name == null) ? new byte[0] : name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > PAGE_SIZE) {
+            throw new IllegalArgumentException("name longer than " + PAGE_SIZE + " bytes: " + bytes.length);
+        }
+        if (pages.length == 0 || pageUsed + bytes.length > PAGE_SIZE) {
+            pages = Arrays.copyOf(pages, pages.length + 1);
+            pages[pages.length - 1] = new byte[PAGE_SIZE];
+            pageUsed = 0;
+        }
+        if (size == positions.length) {
+            positions = Arrays.copyOf(positions, 2 * size);
+            lengths = Arrays.copyOf(lengths, 2 * size);
+        }
+        System.arraycopy(bytes, 0, pages[pages.length - 1], pageUsed, bytes.length);
+        positions[size] = ((long) (pages.length - 1) << PAGE_BITS) | pageUsed;
+        lengths[size] = (name == null) ? -1 : bytes.length;
+        pageUsed += bytes.length;
+        return size++;
+    }
+
+    /** Returns the number of names. */
+    public int size() {
+        return size;
+    }
+
+    /** Returns the name of the given id, as a new String. */
+    public String get(int id) {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("no name " + id + " among " + size);
+        }
+        if (lengths[id] < 0) {
+            return null;
+        }
+        long position = positions[id];
+        byte[] page = pages[(int) (position >>> PAGE_BITS)];
+        return new String(page, (int) (position & (PAGE_SIZE - 1)), lengths[id], StandardCharsets.UTF_8);
+    }
+
+    /** Returns the number of UTF-8 bytes of the name of the given id, or -1 if it is null. */
+    public int byteLength(int id) {
+        return lengths[id];
+    }
+
+    /** Returns roughly the bytes of memory this dictionary takes, pages and arrays included. */
+    public long memoryUsed() {
+        return (long) pages.length * PAGE_SIZE + 8L * positions.length + 4L * lengths.length;
+    }
+
+    /**
+     * Compares the heap taken by args[0] (default 2000000) names held as
+     * Strings and held in a dictionary, and the time a full garbage
+     * collection takes with each.
+     */
+    public static void main(String[] args) {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 2000000;
+        long base = usedAfterGc();
+
+        String[] strings = new String[n];
+        for (int i = 0; i < n; i++) {
+            strings[i] = "User" + i;
+        }
+        long stringBytes = usedAfterGc() - base;
+        long start = System.nanoTime();
+        System.gc();
+        double stringGcMs = (System.nanoTime() - start) / 1e6;
+        int check = strings[n / 2].length();
+        strings = null;
+        base = usedAfterGc();
+
+        NameDictionary names = new NameDictionary();
+        for (int i = 0; i < n; i++) {
+            names.add("User" + i);
+        }
+        long dictionaryBytes = usedAfterGc() - base;
+        start = System.nanoTime();
+        System.gc();
+        double dictionaryGcMs = (System.nanoTime() - start) / 1e6;
+        if (!names.get(n / 2).equals("User" + (n / 2)) || names.get(n / 2).length() != check) {
+            throw new AssertionError("name " + (n / 2) + " reads back as " + names.get(n / 2));
+        }
+        NameDictionary odd = new NameDictionary();
+        odd.add(null);
+        odd.add("");
+        odd.add("Ünal");
+        if (odd.get(0) != null || !odd.get(1).isEmpty() || !odd.get(2).equals("Ünal") || odd.byteLength(2) != 5) {
+            throw new AssertionError("null, empty and non-ASCII names read back as " + odd.get(0) + ", "
+                                     + odd.get(1) + ", " + odd.get(2));
+        }
+        System.out.printf("%d names: Strings %.1f MB, full GC %.0f ms; dictionary %.1f MB, full GC %.0f ms%n",
+                          n, stringBytes / 1e6, stringGcMs, dictionaryBytes / 1e6, dictionaryGcMs);
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
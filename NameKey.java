@@ -0,0 +1,137 @@
+/**
+ * Case-folded keys of names, and 64-bit fingerprints of those keys, so that
+ * names can be compared ignoring case without folding them again on every
+ * comparison: two names are equal ignoring case (String.equalsIgnoreCase)
+ * exactly when their keys are equal, and names whose fingerprints differ
+ * can't be equal, so most comparisons are a single long comparison.
+ *
+ * A key maps every code point c to toLowerCase(toUpperCase(c)), which is
+ * what equalsIgnoreCase compares when c and its counterpart differ, so
+ * non-ASCII names match as they always did (e.g. "ǅ", "Ǆ" and "ǆ", or the
+ * Kelvin sign and "k").
+ */
+public class NameKey {
+
+    // don't instantiate
+    private NameKey() { }
+
+    /**
+     * Returns the case-folded key of the given name: the name itself if
+     * folding doesn't change it, and null for null.
+     */
+    public static String fold(String name) {
+        if (name == null) {
+            return null;
+        }
+        int i = 0;
+        while (i < name.length()) {
+            int c = name.codePointAt(i);
+            if (foldCodePoint(c) != c) break;
+            i += Character.charCount(c);
+        }
+        if (i == name.length()) {
+            return name;
+        }
+        StringBuilder key = new StringBuilder(name.length());
+        key.append(name, 0, i);
+        while (i < name.length()) {
+            int c = name.codePointAt(i);
+            key.appendCodePoint(foldCodePoint(c));
+            i += Character.charCount(c);
+        }
+        return key.toString();
+    }
+
+    private static int foldCodePoint(int c) {
+        // ASCII first: most names are
+        if (c < 0x80) {
+            return (c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /** Returns the fingerprint of the given key (FNV-1a over its chars, then mixed), 0 for null. */
+    public static long fingerprint(String key) {
+        if (key == null) {
+            return 0;
+        }
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        return h ^ (h >>> 33);
+    }
+
+    /**
+     * Returns true if the key and fingerprint pairs are of the same name,
+     * ignoring case. Like equalsIgnoreCase, null matches nothing.
+     */
+    public static boolean matches(String key1, long fingerprint1, String key2, long fingerprint2) {
+        return fingerprint1 == fingerprint2 && key1 != null && key1.equals(key2);
+    }
+
+    /**
+     * Checks that folded keys agree with equalsIgnoreCase for every pair of
+     * chars that are equal ignoring case, and for some names, then times
+     * scanning 1000 names for one of them both ways.
+     */
+    public static void main(String[] args) {
+        // chars are equal ignoring case only if their upper cases, or the
+        // lower cases of those, are equal: check every char against those
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            if (Character.isSurrogate((char) c)) continue;
+            char[] others = {(char) c, Character.toUpperCase((char) c), Character.toLowerCase((char) c),
+                             Character.toLowerCase(Character.toUpperCase((char) c)),
+                             Character.toTitleCase((char) c)};
+            for (char d : others) {
+                check(String.valueOf((char) c), String.valueOf(d));
+            }
+        }
+        String[][] pairs = {{"Alice", "aLICE"}, {"Ünal", "üNAL"}, {"Straße", "STRASSE"}, {"ǅemal", "ǆEMAL"},
+                            {"Kelvin", "kelvin"}, {"ılgaz", "ILGAZ"}, {"İnci", "inci"}, {"Σοφία", "σΟΦΊΑ"},
+                            {"𐐀bc", "𐐨BC"}, {"Foo", "Bar"}, {"", ""}};
+        for (String[] pair : pairs) {
+            check(pair[0], pair[1]);
+        }
+
+        String[] names = new String[1000];
+        String[] keys = new String[names.length];
+        long[] fingerprints = new long[names.length];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "User" + i;
+            keys[i] = fold(names[i]);
+            fingerprints[i] = fingerprint(keys[i]);
+        }
+        String target = "user" + (names.length - 1);
+        String targetKey = fold(target);
+        long targetFingerprint = fingerprint(targetKey);
+        long sink = 0;
+        double ignoreCaseNs = Double.MAX_VALUE;
+        double fingerprintNs = Double.MAX_VALUE;
+        for (int round = 0; round < 2000; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equalsIgnoreCase(target)) sink += i;
+            }
+            ignoreCaseNs = Math.min(ignoreCaseNs, (double) (System.nanoTime() - start) / names.length);
+            start = System.nanoTime();
+            for (int i = 0; i < names.length; i++) {
+                if (matches(keys[i], fingerprints[i], targetKey, targetFingerprint)) sink += i;
+            }
+            fingerprintNs = Math.min(fingerprintNs, (double) (System.nanoTime() - start) / names.length);
+        }
+        System.out.printf("per comparison: equalsIgnoreCase %.2f ns, fingerprint and key %.2f ns (%d)%n",
+                          ignoreCaseNs, fingerprintNs, sink);
+    }
+
+    private static void check(String a, String b) {
+        boolean expected = a.equalsIgnoreCase(b);
+        String keyA = fold(a);
+        String keyB = fold(b);
+        if (matches(keyA, fingerprint(keyA), keyB, fingerprint(keyB)) != expected) {
+            throw new AssertionError("\"" + a + "\" and \"" + b + "\": equalsIgnoreCase is " + expected
+                                     + ", keys are \"" + keyA + "\" and \"" + keyB + "\"");
+        }
+    }
+}
@@ -1,12 +1,109 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+
 public class Network {
 
+    /** What mostPopularUser ranks users by. */
+    public enum Mode {
+        /** The number of followers. */
+        FOLLOWERS,
+        /** The PageRank in the follow graph (see PageRank). */
+        PAGERANK
+    }
+
+    // convergence criteria of the PageRank computation
+    private static final double PAGERANK_TOLERANCE = 1e-8;
+    private static final int PAGERANK_MAX_ITERATIONS = 100;
+
+    // convergence criteria of the label propagation: stop when fewer than
+    // 0.1% of the users change community in a round
+    private static final double COMMUNITY_THRESHOLD = 0.001;
+    private static final int COMMUNITY_MAX_ITERATIONS = 100;
+
     private User[] users;  
     private int userCount; 
 
+    // the ids of the users by the fingerprints of their names (see NameKey):
+    // an open-addressing table with linear probing, holding id + 1 (0 when
+    // empty) and the fingerprint of that user in each slot
+    private int[] nameSlots;
+    private long[] nameFingerprints;
+
+    // followees.array(i) lists the ids (indices in users) of the users that users[i]
+    // follows, in the order of its follows array; followers.array(i) lists the ids
+    // of the followers of users[i]
+    private IdLists followees;
+    private IdLists followers;
+
+    // friends.array(i) lists the ids of the users that users[i] follows and is
+    // followed by (see User.isFriendOf), in the order the friendships formed
+    private IdLists friends;
+
+    // the ids of the users, grouped by number of followees
+    private DegreeBuckets degrees;
+
+    // reusable arrays for distance and shortestPath; allocated on first use
+    private PathFinder pathFinder;
+
+    // the weakly connected components; merged on follows, recomputed after unfollows
+    private ConnectedComponents components;
+    private boolean componentsStale;
+
+    // candidates scored and skipped by recommendWhoToFollowPruned so far
+    private long candidatesScored;
+    private long candidatesSkipped;
+
+    // per-operation call counts and latencies; null unless enabled
+    private NetworkMetrics metrics;
+
+    // cached recommendations; null unless enabled
+    private RecommendationCache recommendationCache;
+
+    // mutual followee counts, maintained on every follow change; null unless enabled
+    private MutualFolloweeCounts mutualCounts;
+
+    // MinHash signatures of the followee sets; null unless enabled
+    private MinHashSketches minHashes;
+
+    // LSH index over minHashes, for similarUsers; null unless enabled
+    private LshIndex similarityIndex;
+
+    // HyperLogLog sketches of 1-hop and 2-hop reach; null unless enabled
+    private ReachSketches reach;
+
+    // incremented on every change of users or follows, to tell when the
+    // snapshot and the ranks below are out of date
+    private int graphVersion;
+    private CompactGraph compactGraph;
+    private int compactGraphVersion = -1;
+    private double[] pageRanks;     // by user id
+    private int pageRankVersion = -1;
+
+    // how the snapshot used by PageRank and coreNumbers is reordered, and that snapshot
+    private GraphOrdering.Strategy graphOrdering = GraphOrdering.Strategy.NONE;
+    private CompactGraph orderedGraph;
+    private int orderedGraphVersion = -1;
+
     /** Creates a network with a given maximum number of users. */
     public Network(int maxUserCount) {
         this.users = new User[maxUserCount];
         this.userCount = 0;
+        // at most 3/4 full
+        int slots = 2;
+        while ((long) slots * 3 < (long) maxUserCount * 4) {
+            slots *= 2;
+        }
+        this.nameSlots = new int[slots];
+        this.nameFingerprints = new long[slots];
+        this.followees = new IdLists(maxUserCount);
+        this.followers = new IdLists(maxUserCount);
+        this.friends = new IdLists(maxUserCount);
+        this.degrees = new DegreeBuckets(maxUserCount);
+        this.components = new ConnectedComponents(maxUserCount);
     }
 
     /** Creates a network with some users (for testing). */
@@ -17,23 +114,250 @@ public class Network {
         users[1] = new User("Bar");
         users[2] = new User("Baz");
         userCount = 3;
+        for (int i = 0; i < userCount; i++) {
+            indexName(i);
+            degrees.add(i, 0);
+            components.addUser();
+        }
     }
 
     public int getUserCount() {
         return this.userCount;
     }
 
+    /**
+     * Starts recording call counts, error counts and latencies of the main
+     * operations of this network, and returns the metrics (see NetworkMetrics).
+     * While metrics are disabled, which is the default, the operations only
+     * pay for one null check.
+     */
+    public NetworkMetrics enableMetrics() {
+        if (metrics == null) {
+            metrics = new NetworkMetrics();
+        }
+        return metrics;
+    }
+
+    /** Stops recording metrics, and removes them from JMX if they were published. */
+    public void disableMetrics() {
+        if (metrics != null) {
+            metrics.unregister();
+            metrics = null;
+        }
+    }
+
+    /** Returns the metrics of this network, or null if they are disabled. */
+    public NetworkMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Starts caching the results of recommendWhoToFollow, for up to the given
+     * number of users (least recently used first out), and returns the cache,
+     * whose statistics help size it. A follow change only invalidates the
+     * recommendations it can change (see RecommendationCache).
+     * Follows must be changed through this network, not through the User
+     * objects returned by getUser(), for the cache to notice them.
+     */
+    public RecommendationCache enableRecommendationCache(int capacity) {
+        recommendationCache = new RecommendationCache(capacity, users.length);
+        return recommendationCache;
+    }
+
+    /** Stops caching recommendations and drops the cache. */
+    public void disableRecommendationCache() {
+        recommendationCache = null;
+    }
+
+    /** Returns the recommendation cache, or null if caching is disabled. */
+    public RecommendationCache getRecommendationCache() {
+        return recommendationCache;
+    }
+
+    /**
+     * Starts maintaining the number of mutual followees of every pair of users
+     * on each follow change (see MutualFolloweeCounts), so that
+     * recommendWhoToFollow looks its answer up instead of scanning all users.
+     * Follows must be changed through this network, not through the User
+     * objects returned by getUser(), for the counts to stay right.
+     */
+    public void enableIncrementalRecommendations() {
+        if (mutualCounts == null) {
+            mutualCounts = new MutualFolloweeCounts(users.length, followers, userCount);
+        }
+    }
+
+    /** Stops maintaining mutual followee counts, and drops them. */
+    public void disableIncrementalRecommendations() {
+        mutualCounts = null;
+    }
+
+    /**
+     * Starts maintaining MinHash signatures of hashCount positions of the
+     * followee sets of all users (see MinHashSketches), which
+     * recommendWhoToFollowApprox needs. More positions give better estimates
+     * for proportionally more time and memory.
+     * Follows must be changed through this network, not through the User
+     * objects returned by getUser(), for the signatures to stay right.
+     * Drops the similarity index, which was built on the old signatures.
+     */
+    public void enableMinHash(int hashCount, long seed) {
+        similarityIndex = null;
+        minHashes = new MinHashSketches(hashCount, seed, users.length);
+        for (int i = 0; i < userCount; i++) {
+            minHashes.recompute(i, followees.array(i), followees.size(i));
+        }
+    }
+
+    /** Stops maintaining MinHash signatures, and drops them (and the similarity index). */
+    public void disableMinHash() {
+        minHashes = null;
+        similarityIndex = null;
+    }
+
+    /**
+     * Starts maintaining an LSH index of bands bands of rows positions over
+     * the MinHash signatures of the followee sets (see LshIndex), which
+     * similarUsers needs. If MinHash signatures aren't enabled yet, or are
+     * shorter than bands * rows positions, they are enabled with that many
+     * and the given seed. Users whose followees are at least about
+     * (1 / bands)^(1 / rows) similar are likely to be found.
+     * Follows must be changed through this network, not through the User
+     * objects returned by getUser(), for the index to stay right.
+     */
+    public void enableSimilarityIndex(int bands, int rows, long seed) {
+        if (bands <= 0 || rows <= 0) {
+            throw new IllegalArgumentException("bands and rows must be positive: " + bands + ", " + rows);
+        }
+        if (minHashes == null || minHashes.size() < bands * rows) {
+            enableMinHash(bands * rows, seed);
+        }
+        similarityIndex = new LshIndex(minHashes, bands, rows, users.length);
+        similarityIndex.rebuild(userCount);
+    }
+
+    /** Stops maintaining the similarity index, and drops it (but not the MinHash signatures). */
+    public void disableSimilarityIndex() {
+        similarityIndex = null;
+    }
+
+    /**
+     * Starts maintaining HyperLogLog sketches of 2^precision bytes of the
+     * users within one and two follows of every user (see ReachSketches),
+     * which estimateReach and estimateTwoHopReach need; precision 11 gives
+     * estimates within about 2% for 4 KB per user. The sketches of all users
+     * are computed in parallel.
+     * Follows must be changed through this network, not through the User
+     * objects returned by getUser(), for the sketches to stay right.
+     */
+    public void enableReachSketches(int precision) {
+        reach = new ReachSketches(precision, users.length);
+        reach.rebuild(followees, userCount);
+    }
+
+    /** Stops maintaining reach sketches, and drops them. */
+    public void disableReachSketches() {
+        reach = null;
+    }
+
+    /**
+     * Recomputes, in parallel, the reach sketches made stale by unfollows,
+     * which would otherwise be recomputed one by one when next estimated.
+     *
+     * @throws IllegalStateException if reach sketches aren't enabled
+     */
+    public void refreshReachSketches() {
+        requireReach().refresh(followees);
+    }
+
+    /**
+     * Returns the estimated number of users that user 'name' follows,
+     * or -1 if there is no such user.
+     *
+     * @throws IllegalStateException if reach sketches aren't enabled
+     */
+    public long estimateReach(String name) {
+        ReachSketches sketches = requireReach();
+        int id = indexOf(name);
+        return (id < 0) ? -1 : sketches.oneHopReach(id, followees);
+    }
+
+    /**
+     * Returns the estimated number of distinct users within two follows of
+     * user 'name' (its followees and theirs, which may include 'name'),
+     * or -1 if there is no such user.
+     *
+     * @throws IllegalStateException if reach sketches aren't enabled
+     */
+    public long estimateTwoHopReach(String name) {
+        ReachSketches sketches = requireReach();
+        int id = indexOf(name);
+        return (id < 0) ? -1 : sketches.twoHopReach(id, followees);
+    }
+
+    private ReachSketches requireReach() {
+        if (reach == null) {
+            throw new IllegalStateException("Reach sketches are not enabled; call enableReachSketches first");
+        }
+        return reach;
+    }
+
     /**
      * Finds and returns the user with the given name, ignoring case.
      * If not found, return null.
      */
     public User getUser(String name) {
-        for (int i = 0; i < userCount; i++) {
-            if (users[i].getName().equalsIgnoreCase(name)) {
-                return users[i];
+        if (metrics == null) {
+            return findUser(name);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            User user = findUser(name);
+            failed = false;
+            return user;
+        } finally {
+            metrics.record(NetworkMetrics.Operation.GET_USER, start, failed);
+        }
+    }
+
+    // the user with the given name, ignoring case, or null
+    private User findUser(String name) {
+        int id = indexOf(name);
+        return (id < 0) ? null : users[id];
+    }
+
+    // the id (index in users) of the user with the given name, ignoring case, or -1
+    private int indexOf(String name) {
+        String key = NameKey.fold(name);
+        return indexOfKey(key, NameKey.fingerprint(key));
+    }
+
+    // the id of the user with the given key and fingerprint (see NameKey), or -1
+    private int indexOfKey(String key, long fingerprint) {
+        if (key == null) {
+            return -1;
+        }
+        int mask = nameSlots.length - 1;
+        for (int slot = (int) fingerprint & mask; nameSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int id = nameSlots[slot] - 1;
+            if (nameFingerprints[slot] == fingerprint && key.equals(users[id].getKey())) {
+                return id;
             }
         }
-        return null;
+        return -1;
+    }
+
+    // adds users[id] to the name table
+    private void indexName(int id) {
+        long fingerprint = users[id].getFingerprint();
+        int mask = nameSlots.length - 1;
+        int slot = (int) fingerprint & mask;
+        while (nameSlots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        nameSlots[slot] = id + 1;
+        nameFingerprints[slot] = fingerprint;
     }
 
     /**
@@ -43,16 +367,35 @@ public class Network {
      * - Otherwise create new User, add, return true.
      */
     public boolean addUser(String name) {
+        if (metrics == null) {
+            return insertUser(name);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            boolean added = insertUser(name);
+            failed = false;
+            return added;
+        } finally {
+            metrics.record(NetworkMetrics.Operation.ADD_USER, start, failed);
+        }
+    }
+
+    private boolean insertUser(String name) {
         // check if full
         if (userCount >= users.length) {
             return false;
         }
         // check if user exists (case-insensitive)
-        if (getUser(name) != null) {
+        if (findUser(name) != null) {
             return false;
         }
         users[userCount] = new User(name);
+        indexName(userCount);
+        degrees.add(userCount, 0);
+        components.addUser();
         userCount++;
+        graphVersion++;
         return true;
     }
 
@@ -63,17 +406,169 @@ public class Network {
      * or if addFollowee() fails.
      */
     public boolean addFollowee(String name1, String name2) {
-        User user1 = getUser(name1);
-        User user2 = getUser(name2);
-        if (user1 == null || user2 == null) {
+        if (metrics == null) {
+            return follow(name1, name2);
+        }
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            boolean added = follow(name1, name2);
+            failed = false;
+            return added;
+        } finally {
+            metrics.record(NetworkMetrics.Operation.ADD_FOLLOWEE, start, failed);
+        }
+    }
+
+    private boolean follow(String name1, String name2) {
+        int id1 = indexOf(name1);
+        int id2 = indexOf(name2);
+        if (id1 < 0 || id2 < 0) {
             return false;
         }
-        // If same user ignoring case, test expects false
-        if (user1.getName().equalsIgnoreCase(user2.getName())) {
+        User user1 = users[id1];
+        User user2 = users[id2];
+        // If same user ignoring case, test expects false (names are distinct ignoring case)
+        if (id1 == id2) {
             return false;
         }
         // Now try to add
-        return user1.addFollowee(user2.getName());
+        if (!user1.addFollowee(user2)) {
+            return false;
+        }
+        followees.add(id1, id2);
+        degrees.setDegree(id1, user1.getfCount());
+        followers.add(id2, id1);
+        followsChanged(id1, id2, true);
+        return true;
+    }
+
+    /**
+     * Makes user with name1 stop following user with name2.
+     * Return false if either doesn't exist (case-insensitive),
+     * or if name1 doesn't follow name2.
+     */
+    public boolean removeFollowee(String name1, String name2) {
+        int id1 = indexOf(name1);
+        int id2 = indexOf(name2);
+        if (id1 < 0 || id2 < 0) {
+            return false;
+        }
+        if (!users[id1].removeFollowee(users[id2].getName())) {
+            return false;
+        }
+        followees.remove(id1, id2);
+        degrees.setDegree(id1, users[id1].getfCount());
+        followers.remove(id2, id1);
+        followsChanged(id1, id2, false);
+        return true;
+    }
+
+    // updates the derived data after user id1 started (or stopped) following id2
+    private void followsChanged(int id1, int id2, boolean followed) {
+        graphVersion++;
+        if (followed) {
+            if (followees.contains(id2, id1)) {
+                friends.add(id1, id2);
+                friends.add(id2, id1);
+            }
+        } else if (friends.remove(id1, id2)) {
+            friends.remove(id2, id1);
+        }
+        if (followed) {
+            components.union(id1, id2);
+        } else {
+            componentsStale = true;
+        }
+        if (minHashes != null) {
+            if (followed) {
+                minHashes.followed(id1, id2);
+            } else {
+                minHashes.recompute(id1, followees.array(id1), followees.size(id1));
+            }
+            if (similarityIndex != null) {
+                similarityIndex.update(id1);
+            }
+        }
+        if (reach != null) {
+            if (followed) {
+                reach.followed(id1, id2, followers.array(id1), followers.size(id1), followees);
+            } else {
+                reach.unfollowed(id1, followers.array(id1), followers.size(id1));
+            }
+        }
+        if (mutualCounts != null) {
+            if (followed) {
+                mutualCounts.followed(id1, followers.array(id2), followers.size(id2));
+            } else {
+                mutualCounts.unfollowed(id1, followers.array(id2), followers.size(id2));
+            }
+        }
+        if (recommendationCache != null) {
+            // only id1's followees changed, so only the mutual followees of
+            // id1 and the followers of id2 changed
+            recommendationCache.invalidate(id1);
+            int[] f = followers.array(id2);
+            for (int i = followers.size(id2) - 1; i >= 0; i--) {
+                recommendationCache.invalidate(f[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns the names of the friends of user 'name' (the users it follows
+     * and is followed by), in the order the friendships formed, or an empty
+     * array if there is no such user.
+     * Follows changed through the User objects returned by getUser() aren't
+     * taken into account.
+     */
+    public String[] getFriends(String name) {
+        int id = indexOf(name);
+        if (id < 0) {
+            return new String[0];
+        }
+        String[] names = new String[friends.size(id)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = users[friends.get(id, i)].getName();
+        }
+        return names;
+    }
+
+    /** Returns the number of friends of user 'name', or -1 if there is no such user. */
+    public int friendCount(String name) {
+        int id = indexOf(name);
+        return (id < 0) ? -1 : friends.size(id);
+    }
+
+    /**
+     * Returns an iterator over all pairs of friends, each pair once, as
+     * {name of the user who joined first, name of the other}, in the order
+     * the first users joined. Follows must not change while iterating.
+     */
+    public Iterator<String[]> friendPairs() {
+        return new Iterator<String[]>() {
+            private int user = 0;   // the user whose friends are being listed
+            private int next = 0;   // the index of the next of them to check
+
+            public boolean hasNext() {
+                // skip to the next friend that joined after user
+                while (user < userCount) {
+                    for (; next < friends.size(user); next++) {
+                        if (friends.get(user, next) > user) return true;
+                    }
+                    user++;
+                    next = 0;
+                }
+                return false;
+            }
+
+            public String[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new String[] {users[user].getName(), users[friends.get(user, next++)].getName()};
+            }
+        };
     }
 
     /**
@@ -82,25 +577,299 @@ public class Network {
      * If tie or no valid user, returns null (simple approach).
      */
     public String recommendWhoToFollow(String name) {
-        User user = getUser(name);
-        if (user == null) {
+        NetworkEvents.Recommendation event = new NetworkEvents.Recommendation();
+        if (metrics == null && !event.isEnabled()) {
+            return recommendFor(name, null);
+        }
+        event.begin();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            String recommended = recommendFor(name, event);
+            failed = false;
+            return recommended;
+        } finally {
+            if (metrics != null) {
+                metrics.record(NetworkMetrics.Operation.RECOMMEND_WHO_TO_FOLLOW, start, failed);
+            }
+            if (event.shouldCommit()) {
+                event.user = name;
+                event.commit();
+            }
+        }
+    }
+
+    // fills in the candidates scanned and the result of the event, if not null
+    private String recommendFor(String name, NetworkEvents.Recommendation event) {
+        int id = indexOf(name);
+        if (id < 0) {
             return null;
         }
+        if (recommendationCache != null) {
+            String[] cached = new String[1];
+            if (recommendationCache.lookup(id, userCount, cached)) {
+                if (event != null) {
+                    event.result = cached[0];
+                }
+                return cached[0];
+            }
+        }
+        if (mutualCounts != null) {
+            int best = mutualCounts.recommend(id, followees, userCount);
+            String result = (best >= 0) ? users[best].getName() : null;
+            if (recommendationCache != null) {
+                recommendationCache.put(id, userCount, result);
+            }
+            if (event != null) {
+                event.candidatesScanned = mutualCounts.candidateCount(id);
+                event.result = result;
+            }
+            return result;
+        }
+        User user = users[id];
         int maxMutual = -1;
+        int scanned = 0;
         User recommended = null;
         for (int i = 0; i < userCount; i++) {
             User candidate = users[i];
             // don't recommend themself, or someone already followed
-            if (!candidate.getName().equalsIgnoreCase(user.getName()) 
-                && !user.follows(candidate.getName())) {
+            if (i != id && !user.followsKey(candidate.getKey(), candidate.getFingerprint())) {
                 int mutual = user.countMutual(candidate);
+                scanned++;
                 if (mutual > maxMutual) {
                     maxMutual = mutual;
                     recommended = candidate;
                 }
             }
         }
-        return (recommended != null) ? recommended.getName() : null;
+        String result = (recommended != null) ? recommended.getName() : null;
+        if (recommendationCache != null) {
+            recommendationCache.put(id, userCount, result);
+        }
+        if (event != null) {
+            event.candidatesScanned = scanned;
+            event.result = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the same recommendation as recommendWhoToFollow, but avoids
+     * counting the mutual followees of most candidates: a candidate can't
+     * share more followees than min(followees of the user, its own followees),
+     * so candidates are visited by decreasing bound (highest number of
+     * followees first), and the search stops as soon as no remaining
+     * candidate can beat the best one found. Candidates whose bound only
+     * allows a tie are skipped too, unless they joined before the best one.
+     * See getCandidatesScored() and getCandidatesSkipped().
+     */
+    public String recommendWhoToFollowPruned(String name) {
+        int id = indexOf(name);
+        if (id < 0) {
+            return null;
+        }
+        User user = users[id];
+        int f = user.getfCount();
+        int best = -1;
+        int maxMutual = -1;
+        long scored = 0;
+        for (int bound = f; bound >= 0 && bound >= maxMutual; bound--) {
+            // every user with at least f followees has bound f
+            int maxDegree = (bound == f) ? degrees.bucketCount() - 1 : bound;
+            for (int d = bound; d <= maxDegree; d++) {
+                int[] bucket = degrees.bucket(d);
+                for (int i = degrees.size(d) - 1; i >= 0; i--) {
+                    int c = bucket[i];
+                    // at the bound, a candidate can at best tie, and ties go to the lower id
+                    if (c == id || (bound == maxMutual && c > best) || user.followsKey(users[c].getKey(), users[c].getFingerprint())) {
+                        continue;
+                    }
+                    int mutual = user.countMutual(users[c]);
+                    scored++;
+                    if (mutual > maxMutual || (mutual == maxMutual && c < best)) {
+                        maxMutual = mutual;
+                        best = c;
+                    }
+                }
+            }
+        }
+        candidatesScored += scored;
+        candidatesSkipped += Math.max(0, userCount - 1 - f - scored);
+        return (best >= 0) ? users[best].getName() : null;
+    }
+
+    /** Returns the number of candidates recommendWhoToFollowPruned has scored so far. */
+    public long getCandidatesScored() {
+        return candidatesScored;
+    }
+
+    /** Returns the number of candidates recommendWhoToFollowPruned has skipped so far. */
+    public long getCandidatesSkipped() {
+        return candidatesSkipped;
+    }
+
+    /**
+     * Returns an approximation of recommendWhoToFollow, for networks too large
+     * to count the mutual followees of every candidate: the number of mutual
+     * followees of each candidate is estimated from MinHash signatures
+     * (see enableMinHash), the shortlistSize candidates with the highest
+     * estimates are rescored exactly, and the best of them is returned
+     * (ties going to the lower id, as in recommendWhoToFollow). If no
+     * shortlisted candidate shares a followee, returns the first eligible
+     * user, as recommendWhoToFollow does when nobody does.
+     *
+     * @throws IllegalStateException if MinHash signatures aren't enabled
+     */
+    public String recommendWhoToFollowApprox(String name, int shortlistSize) {
+        if (minHashes == null) {
+            throw new IllegalStateException("MinHash signatures are not enabled; call enableMinHash first");
+        }
+        int id = indexOf(name);
+        if (id < 0) {
+            return null;
+        }
+        User user = users[id];
+        int f = user.getfCount();
+        TopK shortlist = new TopK(shortlistSize);
+        int firstEligible = -1;
+        for (int c = 0; c < userCount; c++) {
+            if (c == id || followees.contains(id, c)) {
+                continue;
+            }
+            if (firstEligible < 0) {
+                firstEligible = c;
+            }
+            double estimate = minHashes.overlap(id, c, f, degrees.degree(c));
+            if (estimate > 0) {
+                shortlist.offer(c, estimate);
+            }
+        }
+        int best = firstEligible;
+        int maxMutual = 0;
+        for (int c : shortlist.drain(null)) {
+            int mutual = user.countMutual(users[c]);
+            if (mutual > maxMutual || (mutual == maxMutual && mutual > 0 && c < best)) {
+                maxMutual = mutual;
+                best = c;
+            }
+        }
+        return (best >= 0) ? users[best].getName() : null;
+    }
+
+    /**
+     * Returns the names of up to k users whose followees are most similar to
+     * those of user 'name' (by Jaccard similarity: shared followees over
+     * followees of either), most similar first, ties going to the lower id.
+     * Only the users sharing a bucket of the similarity index with 'name'
+     * are compared (see enableSimilarityIndex), so users with low similarity
+     * may be missed, and users sharing no followee are never returned.
+     * Returns an empty array if there is no such user.
+     *
+     * @throws IllegalStateException if the similarity index isn't enabled
+     */
+    public String[] similarUsers(String name, int k) {
+        if (similarityIndex == null) {
+            throw new IllegalStateException("The similarity index is not enabled; call enableSimilarityIndex first");
+        }
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be non-negative: " + k);
+        }
+        int id = indexOf(name);
+        if (id < 0) {
+            return new String[0];
+        }
+        User user = users[id];
+        TopK top = new TopK(k);
+        for (int c : similarityIndex.candidates(id)) {
+            int mutual = user.countMutual(users[c]);
+            if (mutual > 0) {
+                top.offer(c, (double) mutual / (user.getfCount() + users[c].getfCount() - mutual));
+            }
+        }
+        int[] best = top.drain(null);
+        String[] names = new String[best.length];
+        for (int i = 0; i < best.length; i++) {
+            names[i] = users[best[i]].getName();
+        }
+        return names;
+    }
+
+    /**
+     * Recommends up to n users to follow for user 'name' by personalized
+     * PageRank (see PersonalizedPageRank): the users most visited by the
+     * given number of random walks of up to walkLength follows from 'name',
+     * best first, ties going to the lower id, not including 'name' and the
+     * users it follows. Users many follows away can be recommended, but
+     * users no walk reached can't. The walks are seeded from the user's id,
+     * so the same follows give the same recommendations.
+     * Returns an empty array if there is no such user.
+     */
+    public String[] recommendByRandomWalks(String name, int n, int walks, int walkLength) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must be non-negative: " + n);
+        }
+        int id = indexOf(name);
+        if (id < 0) {
+            return new String[0];
+        }
+        IntIntHashMap visits = PersonalizedPageRank.visits(followees, id, walks, walkLength,
+                                                           PageRank.DEFAULT_DAMPING, id);
+        TopK top = new TopK(n);
+        for (int s = 0; s < visits.slots(); s++) {
+            int candidate = visits.keyAt(s);
+            if (candidate >= 0 && !followees.contains(id, candidate)) {
+                top.offer(candidate, visits.valueAt(s));
+            }
+        }
+        int[] best = top.drain(null);
+        String[] names = new String[best.length];
+        for (int i = 0; i < best.length; i++) {
+            names[i] = users[best[i]].getName();
+        }
+        return names;
+    }
+
+    /**
+     * Recommends up to n users to follow for user 'name': the users with the
+     * most mutual followees, best first, with their mutual counts. Ties go
+     * to the user who joined the network first, so the first recommendation
+     * is always the one recommendWhoToFollow returns.
+     * Returns an empty array if there is no such user.
+     */
+    public Recommendation[] recommend(String name, int n) {
+        if (n < 0) {
+            throw new IllegalArgumentException("n must be non-negative: " + n);
+        }
+        int id = indexOf(name);
+        if (id < 0) {
+            return new Recommendation[0];
+        }
+        TopK top = new TopK(n);
+        if (mutualCounts != null) {
+            mutualCounts.offerCandidates(id, followees, top);
+            // users without mutual followees rank after all the others, by id
+            for (int c = 0; c < userCount && !top.isFull(); c++) {
+                if (c != id && !followees.contains(id, c) && mutualCounts.get(id, c) == 0) {
+                    top.offer(c, 0);
+                }
+            }
+        } else {
+            User user = users[id];
+            for (int c = 0; c < userCount; c++) {
+                User candidate = users[c];
+                // don't recommend themself, or someone already followed
+                if (c != id && !user.followsKey(candidate.getKey(), candidate.getFingerprint())) {
+                    top.offer(c, user.countMutual(candidate));
+                }
+            }
+        }
+        double[] scores = new double[top.size()];
+        int[] best = top.drain(scores);
+        Recommendation[] recommendations = new Recommendation[best.length];
+        for (int i = 0; i < best.length; i++) {
+            recommendations[i] = new Recommendation(users[best[i]].getName(), (int) scores[i]);
+        }
+        return recommendations;
     }
 
     /**
@@ -109,33 +878,309 @@ public class Network {
      * If tie or no users, returns the first highest or null.
      */
     public String mostPopularUser() {
+        NetworkEvents.Popularity event = new NetworkEvents.Popularity();
+        if (metrics == null && !event.isEnabled()) {
+            return findMostPopular(null);
+        }
+        event.begin();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            String mostPopular = findMostPopular(event);
+            failed = false;
+            return mostPopular;
+        } finally {
+            if (metrics != null) {
+                metrics.record(NetworkMetrics.Operation.MOST_POPULAR_USER, start, failed);
+            }
+            if (event.shouldCommit()) {
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Returns the name of the most popular user by the given measure: for
+     * FOLLOWERS, the same as mostPopularUser(); for PAGERANK, the user with
+     * the highest PageRank, the first highest on ties. Returns null if
+     * there are no users.
+     */
+    public String mostPopularUser(Mode mode) {
+        if (mode == Mode.FOLLOWERS) {
+            return mostPopularUser();
+        }
+        int[] top = topByPageRank(1);
+        return (top.length == 0) ? null : users[top[0]].getName();
+    }
+
+    /**
+     * Returns the names of the k users with the highest PageRank, best first,
+     * ties going to the user who joined first. The ranks are recomputed
+     * after follows change, starting from the previous ones, which takes
+     * fewer iterations after small changes.
+     * Follows must be changed through this network, not through the User
+     * objects returned by getUser(), for the ranks to reflect them.
+     */
+    public String[] topUsersByPageRank(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be non-negative: " + k);
+        }
+        int[] top = topByPageRank(k);
+        String[] names = new String[top.length];
+        for (int i = 0; i < top.length; i++) {
+            names[i] = users[top[i]].getName();
+        }
+        return names;
+    }
+
+    /** Returns the PageRank of user 'name', or -1 if there is no such user. */
+    public double getPageRank(String name) {
+        int id = indexOf(name);
+        return (id < 0) ? -1 : pageRanks()[id];
+    }
+
+    private int[] topByPageRank(int k) {
+        double[] ranks = pageRanks();
+        TopK top = new TopK(k);
+        for (int i = 0; i < ranks.length; i++) {
+            top.offer(i, ranks[i]);
+        }
+        return top.drain(null);
+    }
+
+    // the PageRank of every user of the current graph, warm-started from the last one
+    private double[] pageRanks() {
+        if (pageRankVersion != graphVersion) {
+            CompactGraph graph = orderedGraph();
+            double[] start = (pageRanks == null) ? null : graph.fromOriginal(pageRanks, 1.0 / userCount);
+            PageRank pageRank = PageRank.compute(graph, PageRank.DEFAULT_DAMPING,
+                                                 PAGERANK_TOLERANCE, PAGERANK_MAX_ITERATIONS, start);
+            pageRanks = graph.toOriginal(pageRank.ranks());
+            pageRankVersion = graphVersion;
+        }
+        return pageRanks;
+    }
+
+    /**
+     * Sets how the users are renumbered in the snapshot that PageRank and
+     * coreNumbers work on, to put neighbours close together in memory (see
+     * GraphOrdering); NONE by default. Results are the same whatever the
+     * order, except for the rounding of ranks; only their speed changes.
+     * User ids, and so name lookups, ties and toString(), are unaffected,
+     * and so is recommendWhoToFollow, which doesn't use the snapshot: its
+     * speed was not measured or improved by this.
+     */
+    public void setGraphOrdering(GraphOrdering.Strategy strategy) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("strategy must not be null");
+        }
+        graphOrdering = strategy;
+        orderedGraphVersion = -1;
+    }
+
+    // the snapshot of the current follows, reordered by graphOrdering
+    private CompactGraph orderedGraph() {
+        if (orderedGraphVersion != graphVersion) {
+            orderedGraph = GraphOrdering.reorder(compactGraph(), graphOrdering);
+            orderedGraphVersion = graphVersion;
+        }
+        return orderedGraph;
+    }
+
+    /**
+     * Returns the number of follows on a shortest path from user 'from' to
+     * user 'to' (1 if 'from' follows 'to', 0 if they're the same), or -1 if
+     * there is no such path or no such user (see PathFinder).
+     * Follows changed through the User objects returned by getUser() aren't
+     * taken into account.
+     */
+    public int distance(String from, String to) {
+        int id1 = indexOf(from);
+        int id2 = indexOf(to);
+        if (id1 < 0 || id2 < 0) {
+            return -1;
+        }
+        return pathFinder().distance(followees, followers, id1, id2);
+    }
+
+    /**
+     * Returns the names of the users on a shortest path of follows from user
+     * 'from' to user 'to', both included, or an empty array if there is no
+     * such path or no such user.
+     */
+    public String[] shortestPath(String from, String to) {
+        int id1 = indexOf(from);
+        int id2 = indexOf(to);
+        if (id1 < 0 || id2 < 0) {
+            return new String[0];
+        }
+        int[] path = pathFinder().shortestPath(followees, followers, id1, id2);
+        String[] names = new String[path.length];
+        for (int i = 0; i < path.length; i++) {
+            names[i] = users[path[i]].getName();
+        }
+        return names;
+    }
+
+    private PathFinder pathFinder() {
+        if (pathFinder == null) {
+            pathFinder = new PathFinder(users.length);
+        }
+        return pathFinder;
+    }
+
+    /**
+     * Returns the component of user 'name' in the follow graph, with follows
+     * taken in either direction (see ConnectedComponents): the id of one of
+     * its users, the same for all of them. Returns -1 if there is no such
+     * user. Takes near-constant time, unless follows were removed since the
+     * last call, in which case the components are recomputed first.
+     * Follows changed through the User objects returned by getUser() aren't
+     * taken into account.
+     */
+    public int componentOf(String name) {
+        int id = indexOf(name);
+        return (id < 0) ? -1 : currentComponents().find(id);
+    }
+
+    /**
+     * Returns the number of components of the follow graph, with follows
+     * taken in either direction; isolated users are components of their own.
+     */
+    public int componentCount() {
+        return currentComponents().count();
+    }
+
+    /** Recomputes the components from scratch, in parallel (see ConnectedComponents). */
+    public void recomputeComponents() {
+        components.recompute(followees);
+        componentsStale = false;
+    }
+
+    private ConnectedComponents currentComponents() {
+        if (componentsStale) {
+            recomputeComponents();
+        }
+        return components;
+    }
+
+    /**
+     * Counts the triangles of the follow graph, with follows taken in either
+     * direction, and so the local clustering coefficient of every user (see
+     * Triangles), on the common fork/join pool. The results are indexed by
+     * the ids of the users, in the order they joined.
+     * Follows changed through the User objects returned by getUser() aren't
+     * taken into account.
+     */
+    public Triangles countTriangles() {
+        return Triangles.count(compactGraph(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Returns the core number of every user, indexed by id (the order users
+     * joined), with follows taken in either direction (see KCore); computed
+     * in parallel.
+     * Follows changed through the User objects returned by getUser() aren't
+     * taken into account.
+     */
+    public int[] coreNumbers() {
+        CompactGraph graph = orderedGraph();
+        return graph.toOriginal(KCore.parallel(graph));
+    }
+
+    /**
+     * Returns the names of the k users with the highest core numbers, best
+     * first, ties going to the user who joined first: the users of the
+     * densest part of the network, rather than the most followed.
+     */
+    public String[] topCoreUsers(int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must be non-negative: " + k);
+        }
+        int[] top = KCore.top(coreNumbers(), k);
+        String[] names = new String[top.length];
+        for (int i = 0; i < top.length; i++) {
+            names[i] = users[top[i]].getName();
+        }
+        return names;
+    }
+
+    /**
+     * Splits the users into communities by label propagation over the follow
+     * graph, with follows taken in either direction (see LabelPropagation),
+     * in parallel. The communities are indexed by user id (the order users
+     * joined), and only depend on the follows and the seed.
+     * Follows changed through the User objects returned by getUser() aren't
+     * taken into account.
+     */
+    public LabelPropagation findCommunities(long seed) {
+        return LabelPropagation.run(compactGraph(), seed, COMMUNITY_THRESHOLD, COMMUNITY_MAX_ITERATIONS);
+    }
+
+    /**
+     * Returns a compact snapshot of the current follows (see CompactGraph),
+     * which is rebuilt only after users or follows change.
+     * Follows changed through the User objects returned by getUser() aren't
+     * in it.
+     */
+    public CompactGraph compactGraph() {
+        if (compactGraphVersion != graphVersion) {
+            compactGraph = new CompactGraph(followees, followers, userCount);
+            compactGraphVersion = graphVersion;
+        }
+        return compactGraph;
+    }
+
+    /**
+     * Returns a copy of the names of the users in a NameDictionary, where the
+     * name of each has its id, e.g. to keep naming the results of analytics
+     * on a compactGraph() once the network itself is gone. The network keeps
+     * its own names as Strings in the users, so this copy adds to its memory
+     * rather than replacing any.
+     */
+    public NameDictionary nameDictionary() {
+        NameDictionary names = new NameDictionary();
+        for (int i = 0; i < userCount; i++) {
+            names.add(users[i].getName());
+        }
+        return names;
+    }
+
+    // fills in the users scanned, the result and its followers of the event, if not null
+    private String findMostPopular(NetworkEvents.Popularity event) {
         if (userCount == 0) {
             return null;
         }
+        // count, for every user, the users whose follow lists hold its name
+        // (ignoring case, once per list), from the lists themselves, so that
+        // follows made through getUser() count too
+        int[] counts = new int[userCount];
+        int[] countedFor = new int[userCount];    // the last follower counted + 1
+        for (int j = 0; j < userCount; j++) {
+            User follower = users[j];
+            for (int f = 0; f < follower.getfCount(); f++) {
+                int id = indexOfKey(follower.getFollowKey(f), follower.getFollowFingerprint(f));
+                if (id >= 0 && countedFor[id] != j + 1) {
+                    countedFor[id] = j + 1;
+                    counts[id]++;
+                }
+            }
+        }
         String mostPopularName = null;
         int maxCount = -1;
         for (int i = 0; i < userCount; i++) {
-            String currentName = users[i].getName();
-            int count = followeeCount(currentName);
+            int count = counts[i];
             if (count > maxCount) {
                 maxCount = count;
-                mostPopularName = currentName;
+                mostPopularName = users[i].getName();
             }
         }
-        return mostPopularName;
-    }
-
-    /**
-     * Returns how many times 'name' appears in all follow lists (0 or 1 from each user).
-     */
-    private int followeeCount(String name) {
-        int count = 0;
-        for (int i = 0; i < userCount; i++) {
-            if (users[i].follows(name)) {
-                count++;
-            }
+        if (event != null) {
+            event.usersScanned = userCount;
+            event.result = mostPopularName;
+            event.followers = maxCount;
         }
-        return count;
+        return mostPopularName;
     }
 
     /**
@@ -147,6 +1192,30 @@ public class Network {
      * If the network is empty, the autograder wants just "Network:" (no extra text).
      */
     public String toString() {
+        NetworkEvents.Describe event = new NetworkEvents.Describe();
+        if (metrics == null && !event.isEnabled()) {
+            return describe();
+        }
+        event.begin();
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            String text = describe();
+            failed = false;
+            event.length = text.length();
+            return text;
+        } finally {
+            if (metrics != null) {
+                metrics.record(NetworkMetrics.Operation.TO_STRING, start, failed);
+            }
+            if (event.shouldCommit()) {
+                event.users = userCount;
+                event.commit();
+            }
+        }
+    }
+
+    private String describe() {
         StringBuilder sb = new StringBuilder("Network:");
         // If no users, just return "Network:"
         if (userCount == 0) {
@@ -175,6 +1244,93 @@ public class Network {
         }
         return sb.toString();
     }
-    
-    
+
+    /**
+     * Reads a network from the given file, with room for exactly the users in it.
+     * See load(String, int).
+     */
+    public static Network load(String fileName) {
+        return load(fileName, 0);
+    }
+
+    /**
+     * Reads a network from the given file. The file has one line per user, in the
+     * format of toString(): "Alice -> Bob Charlie " (the user's name, " ->", and
+     * the names of the users s/he follows). A leading "Network:" line is skipped,
+     * so the output of toString() and save() can be loaded back.
+     * Followees that aren't users in the file are ignored.
+     * The network has room for maxUserCount users, or for just the users
+     * in the file, whichever is larger.
+     */
+    public static Network load(String fileName, int maxUserCount) {
+        NetworkEvents.BulkLoad event = new NetworkEvents.BulkLoad();
+        event.begin();
+        String[] lines = new In(fileName).readAllLines();
+        int count = 0;
+        for (String line : lines) {
+            if (isUserLine(line)) count++;
+        }
+        Network network = new Network(Math.max(count, maxUserCount));
+        // add everyone first, so that followees can appear before their own line
+        for (String line : lines) {
+            if (isUserLine(line)) network.addUser(line.substring(0, line.indexOf(" ->")).trim());
+        }
+        for (String line : lines) {
+            if (!isUserLine(line)) continue;
+            int arrow = line.indexOf(" ->");
+            String name = line.substring(0, arrow).trim();
+            String followees = line.substring(arrow + 3).trim();
+            if (followees.isEmpty()) continue;
+            for (String followee : followees.split("\\s+")) {
+                if (network.addFollowee(name, followee)) {
+                    event.follows++;
+                }
+            }
+        }
+        if (event.shouldCommit()) {
+            event.fileName = fileName;
+            event.users = network.getUserCount();
+            event.commit();
+        }
+        return network;
+    }
+
+    // true if the given line of a network file describes a user
+    private static boolean isUserLine(String line) {
+        return line.indexOf(" ->") > 0;
+    }
+
+    /**
+     * Writes this network to the given file, in the format of toString(),
+     * one user per line, so that load() can read it back.
+     */
+    public void save(String fileName) {
+        NetworkEvents.Snapshot event = new NetworkEvents.Snapshot();
+        event.begin();
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+            writer.write("Network:");
+            for (int i = 0; i < userCount; i++) {
+                writer.newLine();
+                writer.write(users[i].getName());
+                writer.write(" ->");
+                String[] f = users[i].getfFollows();
+                int fc = users[i].getfCount();
+                for (int j = 0; j < fc; j++) {
+                    writer.write(" ");
+                    writer.write(f[j]);
+                }
+                writer.write(" ");
+                event.follows += fc;
+            }
+            writer.newLine();
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Could not write " + fileName, e);
+        }
+        if (event.shouldCommit()) {
+            event.fileName = fileName;
+            event.users = userCount;
+            event.commit();
+        }
+    }
 }
@@ -0,0 +1,531 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Micro-benchmarks for the hot paths of User and Network.
+ *
+ * Every benchmark runs over networks of several sizes and follow-degree
+ * distributions, generated by NetworkGenerator from a fixed seed, so two
+ * runs on the same machine measure the same work. Each benchmark is warmed up first, and then
+ * measured over several iterations; the results (average time per operation,
+ * in nanoseconds) are printed as a table and, optionally, saved as JSON so
+ * that two runs can be compared.
+ *
+ * Usage: java NetworkBenchmark [-sizes 100,1000] [-degrees uniform,preferential,powerlaw]
+ *                              [-warmup 3] [-iterations 5] [-time 200]
+ *                              [-only name,...] [-json results.json]
+ */
+public class NetworkBenchmark {
+
+    // results of the benchmarked calls end up here, so the JIT can't drop them
+    static volatile long sink;
+
+    /** One benchmarked operation; returns a value derived from its result. */
+    interface Operation {
+        long run(int i);
+    }
+
+    /** A named operation over a prepared network. */
+    interface Benchmark {
+        /** Prepares the state for one measured batch and returns the operation to time. */
+        Operation setUp(Network network, String[] names, Random random);
+    }
+
+    private static final String[] BENCHMARKS = {
+        "getUser", "addUser", "addFollowee", "follows", "countMutual",
+        "isFriendOf", "recommendWhoToFollow", "recommendIncremental", "recommendPruned",
+        "recommendApprox", "recommendRandomWalks", "similarUsers", "twoHopReach",
+        "friendPairs", "componentCount", "recomputeComponents", "mostPopularUser", "pageRank",
+        "triangles", "coreNumbers", "communities", "toString"
+    };
+
+    private static final long SEED = 20250101L;
+
+    // parameters of the approximate recommendations
+    private static final int MINHASH_SIZE = 16;
+    private static final int SHORTLIST_SIZE = 10;
+
+    // parameters of the random-walk recommendations
+    private static final int WALKS = 1000;
+    private static final int WALK_LENGTH = 10;
+
+    // parameters of the similarity index: 8 bands of 2 of the MINHASH_SIZE positions
+    private static final int LSH_BANDS = 8;
+    private static final int LSH_ROWS = 2;
+
+    // precision of the reach sketches: 2 KB each, about 2% error
+    private static final int REACH_PRECISION = 11;
+
+    // networks whose MinHash signatures (or similarity index, or reach sketches)
+    // were already built by a batch
+    private static final Set<Network> minHashEnabled = Collections.newSetFromMap(new WeakHashMap<>());
+    private static final Set<Network> similarityIndexEnabled = Collections.newSetFromMap(new WeakHashMap<>());
+    private static final Set<Network> reachEnabled = Collections.newSetFromMap(new WeakHashMap<>());
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = {100, 1000};
+        String[] degrees = {"uniform", "powerlaw"};
+        String[] only = BENCHMARKS;
+        int warmup = 3;
+        int iterations = 5;
+        long timeMillis = 200;
+        String json = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            switch (args[i]) {
+                case "-sizes":      sizes = parseSizes(args[i + 1]); break;
+                case "-degrees":    degrees = args[i + 1].split(","); break;
+                case "-only":       only = args[i + 1].split(","); break;
+                case "-warmup":     warmup = parseCount(args[i + 1], 0, "warmup"); break;
+                case "-iterations": iterations = parseCount(args[i + 1], 1, "iterations"); break;
+                case "-time":       timeMillis = Long.parseLong(args[i + 1]); break;
+                case "-json":       json = args[i + 1]; break;
+                default: throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        StringBuilder results = new StringBuilder("[\n");
+        boolean first = true;
+        StdOut.printf("%-22s %8s %8s %14s %12s%n", "benchmark", "users", "degrees", "ns/op", "error");
+        for (String benchmark : only) {
+            for (int size : sizes) {
+                for (String degree : degrees) {
+                    double[] samples = measure(benchmark, size, degree, warmup, iterations, timeMillis);
+                    double mean = mean(samples);
+                    double error = error(samples, mean);
+                    StdOut.printf("%-22s %8d %8s %14.1f %12.1f%n", benchmark, size, degree, mean, error);
+                    if (!first) results.append(",\n");
+                    first = false;
+                    appendJson(results, benchmark, size, degree, mean, error, samples);
+                    if (benchmark.equals("recommendPruned")) {
+                        StdOut.printf("%-22s %8d %8s %13.1f%% of candidates skipped%n", "", size, degree,
+                                      100 * skippedFraction(size, degree));
+                    }
+                    if (benchmark.equals("recommendApprox")) {
+                        double[] accuracy = approxAccuracy(size, degree);
+                        StdOut.printf("%-22s %8d %8s %13.1f%% same as exact, "
+                                      + "%.1f%% of the exact mutual count%n",
+                                      "", size, degree, 100 * accuracy[0], 100 * accuracy[1]);
+                    }
+                    if (benchmark.equals("recommendRandomWalks")) {
+                        StdOut.printf("%-22s %8d %8s %13.1f%% of the top 10 shared with recommend()%n",
+                                      "", size, degree, 100 * randomWalkOverlap(size, degree));
+                    }
+                    if (benchmark.equals("similarUsers")) {
+                        StdOut.printf("%-22s %8d %8s %13.1f%% of most similar users found%n",
+                                      "", size, degree, 100 * similarRecall(size, degree));
+                    }
+                    if (benchmark.equals("twoHopReach")) {
+                        StdOut.printf("%-22s %8d %8s %13.1f%% mean error%n", "", size, degree,
+                                      100 * reachError(size, degree));
+                    }
+                }
+            }
+        }
+        results.append("\n]\n");
+        if (json != null) {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(json))) {
+                writer.print(results);
+            }
+            StdOut.println("Results saved to " + json);
+        }
+    }
+
+    /**
+     * Runs the given benchmark on a network of the given size and degree
+     * distribution, and returns the average time per operation (ns) of each
+     * measured iteration.
+     */
+    static double[] measure(String benchmark, int size, String degree,
+                            int warmup, int iterations, long timeMillis) {
+        Benchmark b = benchmark(benchmark);
+        double[] samples = new double[iterations];
+        for (int it = -warmup; it < iterations; it++) {
+            // every iteration starts from the same network and query sequence
+            Random random = new Random(SEED);
+            String[] names = names(size);
+            Network network = build(names, degree, random);
+            long ops = 0;
+            long elapsed = 0;
+            long deadline = timeMillis * 1000000L;
+            // batches grow until they fill the query arrays, so slow operations
+            // don't run thousands of times and fast ones aren't dominated by setUp
+            int batch = 1;
+            while (elapsed < deadline) {
+                Operation op = b.setUp(network, names, random);
+                long start = System.nanoTime();
+                long acc = 0;
+                for (int i = 0; i < batch; i++) {
+                    acc += op.run(i);
+                }
+                elapsed += System.nanoTime() - start;
+                sink += acc;
+                ops += batch;
+                batch = Math.min(2 * batch, size);
+            }
+            if (it >= 0) samples[it] = (double) elapsed / ops;
+        }
+        return samples;
+    }
+
+    // benchmarks that mutate the network work on a fresh copy in every batch
+    private static final Benchmark ADD_USER = (network, names, random) -> {
+        Network empty = new Network(names.length);
+        return i -> empty.addUser(names[i]) ? 1 : 0;
+    };
+
+    private static final Benchmark ADD_FOLLOWEE = (network, names, random) -> {
+        Network fresh = new Network(names.length);
+        for (String name : names) fresh.addUser(name);
+        int[] from = randomIds(random, names.length, names.length);
+        int[] to = randomIds(random, names.length, names.length);
+        return i -> fresh.addFollowee(names[from[i]], names[to[i]]) ? 1 : 0;
+    };
+
+    static Benchmark benchmark(String name) {
+        switch (name) {
+            case "getUser":
+                return (network, names, random) -> {
+                    int[] q = randomIds(random, names.length, names.length);
+                    // query with a different case than the stored name
+                    String[] upper = new String[names.length];
+                    for (int i = 0; i < upper.length; i++) upper[i] = names[q[i]].toUpperCase();
+                    return i -> network.getUser(upper[i]) != null ? 1 : 0;
+                };
+            case "addUser":
+                return ADD_USER;
+            case "addFollowee":
+                return ADD_FOLLOWEE;
+            case "follows":
+                return (network, names, random) -> {
+                    User[] a = randomUsers(network, names, random);
+                    int[] b = randomIds(random, names.length, names.length);
+                    return i -> a[i].follows(names[b[i]]) ? 1 : 0;
+                };
+            case "countMutual":
+                return (network, names, random) -> {
+                    User[] a = randomUsers(network, names, random);
+                    User[] b = randomUsers(network, names, random);
+                    return i -> a[i].countMutual(b[i]);
+                };
+            case "isFriendOf":
+                return (network, names, random) -> {
+                    User[] a = randomUsers(network, names, random);
+                    User[] b = randomUsers(network, names, random);
+                    return i -> a[i].isFriendOf(b[i]) ? 1 : 0;
+                };
+            case "recommendWhoToFollow":
+                return (network, names, random) -> {
+                    int[] q = randomIds(random, names.length, names.length);
+                    return i -> {
+                        String r = network.recommendWhoToFollow(names[q[i]]);
+                        return (r == null) ? 0 : r.length();
+                    };
+                };
+            case "recommendIncremental":
+                return (network, names, random) -> {
+                    network.enableIncrementalRecommendations();
+                    int[] q = randomIds(random, names.length, names.length);
+                    return i -> {
+                        String r = network.recommendWhoToFollow(names[q[i]]);
+                        return (r == null) ? 0 : r.length();
+                    };
+                };
+            case "recommendPruned":
+                return (network, names, random) -> {
+                    int[] q = randomIds(random, names.length, names.length);
+                    return i -> {
+                        String r = network.recommendWhoToFollowPruned(names[q[i]]);
+                        return (r == null) ? 0 : r.length();
+                    };
+                };
+            case "recommendApprox":
+                return (network, names, random) -> {
+                    if (!minHashEnabled.contains(network)) {
+                        network.enableMinHash(MINHASH_SIZE, SEED);
+                        minHashEnabled.add(network);
+                    }
+                    int[] q = randomIds(random, names.length, names.length);
+                    return i -> {
+                        String r = network.recommendWhoToFollowApprox(names[q[i]], SHORTLIST_SIZE);
+                        return (r == null) ? 0 : r.length();
+                    };
+                };
+            case "recommendRandomWalks":
+                return (network, names, random) -> {
+                    int[] q = randomIds(random, names.length, names.length);
+                    return i -> network.recommendByRandomWalks(names[q[i]], 1, WALKS, WALK_LENGTH).length;
+                };
+            case "similarUsers":
+                return (network, names, random) -> {
+                    if (!similarityIndexEnabled.contains(network)) {
+                        network.enableSimilarityIndex(LSH_BANDS, LSH_ROWS, SEED);
+                        similarityIndexEnabled.add(network);
+                    }
+                    int[] q = randomIds(random, names.length, names.length);
+                    return i -> network.similarUsers(names[q[i]], 1).length;
+                };
+            case "twoHopReach":
+                return (network, names, random) -> {
+                    if (!reachEnabled.contains(network)) {
+                        network.enableReachSketches(REACH_PRECISION);
+                        reachEnabled.add(network);
+                    }
+                    int[] q = randomIds(random, names.length, names.length);
+                    return i -> network.estimateTwoHopReach(names[q[i]]);
+                };
+            case "friendPairs":
+                // all pairs of friends, as a friend-graph export would list them
+                return (network, names, random) -> i -> {
+                    long pairs = 0;
+                    for (Iterator<String[]> it = network.friendPairs(); it.hasNext(); it.next()) pairs++;
+                    return pairs;
+                };
+            case "componentCount":
+                return (network, names, random) -> i -> network.componentCount();
+            case "recomputeComponents":
+                return (network, names, random) -> i -> {
+                    network.recomputeComponents();
+                    return network.componentCount();
+                };
+            case "mostPopularUser":
+                return (network, names, random) -> i -> network.mostPopularUser().length();
+            case "pageRank":
+                // one follow change, then the top ranks, warm-started from the last ones
+                return (network, names, random) -> {
+                    int[] a = randomIds(random, names.length, names.length);
+                    int[] b = randomIds(random, names.length, names.length);
+                    return i -> {
+                        if (!network.removeFollowee(names[a[i]], names[b[i]])) {
+                            network.addFollowee(names[a[i]], names[b[i]]);
+                        }
+                        return network.topUsersByPageRank(10).length;
+                    };
+                };
+            case "triangles":
+                return (network, names, random) -> i -> network.countTriangles().total();
+            case "coreNumbers":
+                return (network, names, random) -> i -> network.coreNumbers().length;
+            case "communities":
+                return (network, names, random) -> i -> network.findCommunities(SEED).communityCount();
+            case "toString":
+                return (network, names, random) -> i -> network.toString().length();
+            default:
+                throw new IllegalArgumentException("unknown benchmark " + name);
+        }
+    }
+
+    /**
+     * Returns the fraction of the candidates that recommendWhoToFollowPruned
+     * skips when recommending to every user of a benchmark network.
+     */
+    static double skippedFraction(int size, String degree) {
+        String[] names = names(size);
+        Network network = build(names, degree, new Random(SEED));
+        for (String name : names) {
+            network.recommendWhoToFollowPruned(name);
+        }
+        long skipped = network.getCandidatesSkipped();
+        long total = skipped + network.getCandidatesScored();
+        return (total == 0) ? 0 : (double) skipped / total;
+    }
+
+    /**
+     * Compares recommendWhoToFollowApprox to recommendWhoToFollow for every
+     * user of a benchmark network, and returns the fraction of identical
+     * recommendations and the total mutual count of the approximate
+     * recommendations relative to that of the exact ones.
+     */
+    static double[] approxAccuracy(int size, String degree) {
+        String[] names = names(size);
+        Network network = build(names, degree, new Random(SEED));
+        network.enableMinHash(MINHASH_SIZE, SEED);
+        int same = 0;
+        long exactMutual = 0;
+        long approxMutual = 0;
+        for (String name : names) {
+            String exact = network.recommendWhoToFollow(name);
+            String approx = network.recommendWhoToFollowApprox(name, SHORTLIST_SIZE);
+            if (exact == null ? approx == null : exact.equals(approx)) same++;
+            User user = network.getUser(name);
+            if (exact != null) exactMutual += user.countMutual(network.getUser(exact));
+            if (approx != null) approxMutual += user.countMutual(network.getUser(approx));
+        }
+        double mutualRatio = (exactMutual == 0) ? 1 : (double) approxMutual / exactMutual;
+        return new double[] {(double) same / size, mutualRatio};
+    }
+
+    /**
+     * Returns the average fraction of the top 10 recommendations of
+     * recommend() that recommendByRandomWalks also has in its top 10, over
+     * the users of a benchmark network.
+     */
+    static double randomWalkOverlap(int size, String degree) {
+        String[] names = names(size);
+        Network network = build(names, degree, new Random(SEED));
+        double overlap = 0;
+        int count = 0;
+        for (String name : names) {
+            Recommendation[] exact = network.recommend(name, 10);
+            if (exact.length == 0) continue;
+            Set<String> walked = new HashSet<>();
+            Collections.addAll(walked, network.recommendByRandomWalks(name, 10, WALKS, WALK_LENGTH));
+            int shared = 0;
+            for (Recommendation r : exact) {
+                if (walked.contains(r.getName())) shared++;
+            }
+            overlap += (double) shared / exact.length;
+            count++;
+        }
+        return (count == 0) ? 1 : overlap / count;
+    }
+
+    /**
+     * Returns the fraction of the users of a benchmark network that share a
+     * followee with someone for which similarUsers(name, 1) finds a user as
+     * similar as the most similar one found by comparing against everyone.
+     */
+    static double similarRecall(int size, String degree) {
+        String[] names = names(size);
+        Network network = build(names, degree, new Random(SEED));
+        network.enableSimilarityIndex(LSH_BANDS, LSH_ROWS, SEED);
+        int found = 0;
+        int total = 0;
+        for (String name : names) {
+            User user = network.getUser(name);
+            double best = 0;
+            for (String other : names) {
+                if (!other.equals(name)) best = Math.max(best, jaccard(user, network.getUser(other)));
+            }
+            if (best == 0) continue;
+            total++;
+            String[] similar = network.similarUsers(name, 1);
+            if (similar.length > 0 && jaccard(user, network.getUser(similar[0])) == best) found++;
+        }
+        return (total == 0) ? 1 : (double) found / total;
+    }
+
+    // the Jaccard similarity of the followees of two users
+    private static double jaccard(User a, User b) {
+        int mutual = a.countMutual(b);
+        return (mutual == 0) ? 0 : (double) mutual / (a.getfCount() + b.getfCount() - mutual);
+    }
+
+    /**
+     * Returns the mean relative error of estimateTwoHopReach over the users
+     * of a benchmark network that follow someone, against the exact count.
+     */
+    static double reachError(int size, String degree) {
+        String[] names = names(size);
+        Network network = build(names, degree, new Random(SEED));
+        network.enableReachSketches(REACH_PRECISION);
+        double error = 0;
+        int count = 0;
+        for (String name : names) {
+            User user = network.getUser(name);
+            Set<String> reached = new HashSet<>();
+            for (int i = 0; i < user.getfCount(); i++) {
+                User followee = network.getUser(user.getfFollows()[i]);
+                reached.add(followee.getName().toLowerCase());
+                for (int j = 0; j < followee.getfCount(); j++) {
+                    reached.add(followee.getfFollows()[j].toLowerCase());
+                }
+            }
+            if (reached.isEmpty()) continue;
+            error += Math.abs(network.estimateTwoHopReach(name) - reached.size()) / (double) reached.size();
+            count++;
+        }
+        return (count == 0) ? 0 : error / count;
+    }
+
+    /** Returns the names of the users of a benchmark network of the given size. */
+    static String[] names(int size) {
+        String[] names = new String[size];
+        for (int i = 0; i < size; i++) names[i] = NetworkGenerator.name(i);
+        return names;
+    }
+
+    /**
+     * Builds a network of the given users with the given NetworkGenerator model
+     * ("uniform", "preferential" or "powerlaw"), seeded from the given random.
+     */
+    static Network build(String[] names, String degree, Random random) {
+        return new NetworkGenerator(random.nextLong()).generate(degree, names.length);
+    }
+
+    private static int[] randomIds(Random random, int count, int bound) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) ids[i] = random.nextInt(bound);
+        return ids;
+    }
+
+    private static User[] randomUsers(Network network, String[] names, Random random) {
+        User[] users = new User[names.length];
+        for (int i = 0; i < users.length; i++) {
+            users[i] = network.getUser(names[random.nextInt(names.length)]);
+        }
+        return users;
+    }
+
+    // a count given on the command line, at least min
+    private static int parseCount(String value, int min, String option) {
+        int count = Integer.parseInt(value.trim());
+        if (count < min) {
+            throw new IllegalArgumentException(option + " must be at least " + min + ": " + count);
+        }
+        return count;
+    }
+
+    // network sizes, each at least 1: a benchmark needs a user to run its operations on
+    private static int[] parseSizes(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+            if (values[i] < 1) throw new IllegalArgumentException("sizes must be positive: " + values[i]);
+        }
+        return values;
+    }
+
+    static double mean(double[] samples) {
+        double sum = 0;
+        for (double s : samples) sum += s;
+        return sum / samples.length;
+    }
+
+    // half-width of a ~99.9% interval around the mean (normal approximation)
+    static double error(double[] samples, double mean) {
+        if (samples.length < 2) return Double.NaN;
+        double sq = 0;
+        for (double s : samples) sq += (s - mean) * (s - mean);
+        double stddev = Math.sqrt(sq / (samples.length - 1));
+        return 3.29 * stddev / Math.sqrt(samples.length);
+    }
+
+    private static void appendJson(StringBuilder sb, String benchmark, int size, String degree,
+                                   double mean, double error, double[] samples) {
+        sb.append("  {\"benchmark\": \"").append(benchmark).append("\", ")
+          .append("\"params\": {\"users\": ").append(size)
+          .append(", \"degrees\": \"").append(degree).append("\"}, ")
+          .append("\"mode\": \"avgt\", \"unit\": \"ns/op\", ")
+          .append("\"score\": ").append(number(mean)).append(", ")
+          .append("\"scoreError\": ").append(number(error)).append(", ")
+          .append("\"samples\": [");
+        for (int i = 0; i < samples.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(number(samples[i]));
+        }
+        sb.append("]}");
+    }
+
+    private static String number(double x) {
+        return Double.isNaN(x) ? "null" : String.format(Locale.US, "%.3f", x);
+    }
+}
@@ -0,0 +1,104 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Java Flight Recorder events emitted by Network, so that slow queries can
+ * be correlated with GC, lock contention and the like in a recording
+ * (e.g. jcmd <pid> JFR.start). Queries are only recorded when they take at
+ * least their threshold, 10 ms by default; file loads and saves are always
+ * recorded. Thresholds can be changed in the recording settings,
+ * e.g. "network.Recommendation#threshold=1 ms".
+ */
+public final class NetworkEvents {
+
+    // don't instantiate
+    private NetworkEvents() { }
+
+    @Name("network.Recommendation")
+    @Label("Recommend Who To Follow")
+    @Category("Network")
+    @Description("A call of Network.recommendWhoToFollow")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static class Recommendation extends Event {
+        @Label("User")
+        String user;
+
+        @Label("Candidates Scanned")
+        @Description("Number of users whose mutual followees were counted")
+        int candidatesScanned;
+
+        @Label("Result")
+        String result;
+    }
+
+    @Name("network.Popularity")
+    @Label("Most Popular User")
+    @Category("Network")
+    @Description("A call of Network.mostPopularUser")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static class Popularity extends Event {
+        @Label("Users Scanned")
+        int usersScanned;
+
+        @Label("Result")
+        String result;
+
+        @Label("Followers")
+        @Description("Number of followers of the most popular user")
+        int followers;
+    }
+
+    @Name("network.ToString")
+    @Label("Network To String")
+    @Category("Network")
+    @Description("A call of Network.toString")
+    @Threshold("10 ms")
+    @StackTrace(false)
+    static class Describe extends Event {
+        @Label("Users")
+        int users;
+
+        @Label("Length")
+        @Description("Number of characters in the description")
+        int length;
+    }
+
+    @Name("network.BulkLoad")
+    @Label("Network Load")
+    @Category("Network")
+    @Description("A network read from a file by Network.load")
+    @StackTrace(false)
+    static class BulkLoad extends Event {
+        @Label("File")
+        String fileName;
+
+        @Label("Users")
+        int users;
+
+        @Label("Follows")
+        int follows;
+    }
+
+    @Name("network.Snapshot")
+    @Label("Network Save")
+    @Category("Network")
+    @Description("A network written to a file by Network.save")
+    @StackTrace(false)
+    static class Snapshot extends Event {
+        @Label("File")
+        String fileName;
+
+        @Label("Users")
+        int users;
+
+        @Label("Follows")
+        int follows;
+    }
+}
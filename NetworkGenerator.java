@@ -0,0 +1,181 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates synthetic social networks for load tests and benchmarks.
+ *
+ * Three models are supported:
+ * - uniform: every user follows users chosen uniformly at random;
+ * - preferential attachment (Barabasi-Albert): users join one at a time, and
+ *   each new user follows existing users with probability proportional to
+ *   their number of followers (plus one), so early users become hubs;
+ * - power law: the number of followers of the users follows a power law
+ *   (Zipf) distribution, and a few celebrity users get a fixed share of all
+ *   the follows on top of that.
+ *
+ * Every user follows at most User.maxfCount others, as in any network.
+ * The users are named "User0", "User1", ..., and a generator created with a
+ * given seed always generates the same networks, in the same order.
+ * Use Network.save() to write a generated network to a file that
+ * Network.load() can read.
+ *
+ * Usage: java NetworkGenerator uniform|preferential|powerlaw users seed fileName
+ */
+public class NetworkGenerator {
+
+    private final Random random;
+
+    /** Creates a generator whose networks are determined by the given seed. */
+    public NetworkGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /** Returns the name of the user with the given number in generated networks. */
+    public static String name(int i) {
+        return "User" + i;
+    }
+
+    /**
+     * Returns a network of the given number of users, in which each user
+     * follows between 0 and maxFollows users (uniformly), chosen uniformly
+     * among the others.
+     */
+    public Network uniform(int userCount, int maxFollows) {
+        checkFollows(maxFollows);
+        Network network = withUsers(userCount);
+        for (int i = 0; i < userCount && userCount > 1; i++) {
+            int follows = random.nextInt(maxFollows + 1);
+            for (int j = 0; j < follows; j++) {
+                network.addFollowee(name(i), name(random.nextInt(userCount)));
+            }
+        }
+        return network;
+    }
+
+    /**
+     * Returns a network grown by preferential attachment (Barabasi-Albert):
+     * users join one at a time, and each new user follows up to `follows`
+     * of the users who joined before, each chosen with probability
+     * proportional to its number of followers plus one.
+     */
+    public Network preferentialAttachment(int userCount, int follows) {
+        checkFollows(follows);
+        Network network = withUsers(userCount);
+        // every user appears once, plus once per follower; sampling this
+        // array uniformly samples users proportionally to (followers + 1)
+        int[] targets = new int[userCount + userCount * follows];
+        int size = 0;
+        for (int i = 0; i < userCount; i++) {
+            for (int j = 0; j < follows && i > 0; j++) {
+                int target = targets[random.nextInt(size)];
+                if (network.addFollowee(name(i), name(target))) {
+                    targets[size++] = target;
+                }
+            }
+            targets[size++] = i;
+        }
+        return network;
+    }
+
+    /**
+     * Returns a network in which the number of followers follows a power law:
+     * the user ranked r (in a random order) is followed with probability
+     * proportional to 1 / r^exponent. In addition, `celebrities` randomly
+     * chosen users share celebrityShare (0 to 1) of all the follows.
+     * Each user follows between 1 and maxFollows users (uniformly), or none
+     * if maxFollows is 0.
+     */
+    public Network powerLaw(int userCount, int maxFollows, double exponent,
+                            int celebrities, double celebrityShare) {
+        checkFollows(maxFollows);
+        if (exponent < 0) throw new IllegalArgumentException("exponent must be non-negative: " + exponent);
+        if (celebrityShare < 0 || celebrityShare > 1) {
+            throw new IllegalArgumentException("celebrity share must be between 0 and 1: " + celebrityShare);
+        }
+        Network network = withUsers(userCount);
+        if (userCount < 2 || maxFollows == 0) return network;
+        int[] rank = shuffledIds(userCount);
+        double[] cdf = new double[userCount];
+        double sum = 0;
+        for (int r = 0; r < userCount; r++) {
+            sum += 1.0 / Math.pow(r + 1, exponent);
+            cdf[r] = sum;
+        }
+        int famous = Math.min(celebrities, userCount);
+        for (int i = 0; i < userCount; i++) {
+            int follows = 1 + random.nextInt(maxFollows);
+            for (int j = 0; j < follows; j++) {
+                int target;
+                if (famous > 0 && random.nextDouble() < celebrityShare) {
+                    // the celebrities are the last ranks, so they aren't the natural hubs too
+                    target = rank[userCount - 1 - random.nextInt(famous)];
+                }
+                else {
+                    int r = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+                    target = rank[Math.min(r < 0 ? -r - 1 : r, userCount - 1)];
+                }
+                network.addFollowee(name(i), name(target));
+            }
+        }
+        return network;
+    }
+
+    // a network with room for, and holding, the given number of users
+    private static Network withUsers(int userCount) {
+        if (userCount < 0) throw new IllegalArgumentException("user count must be non-negative: " + userCount);
+        Network network = new Network(userCount);
+        for (int i = 0; i < userCount; i++) {
+            network.addUser(name(i));
+        }
+        return network;
+    }
+
+    // 0 .. n-1 in random order
+    private int[] shuffledIds(int n) {
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) ids[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = ids[i];
+            ids[i] = ids[j];
+            ids[j] = t;
+        }
+        return ids;
+    }
+
+    private static void checkFollows(int follows) {
+        if (follows < 0 || follows > User.maxfCount) {
+            throw new IllegalArgumentException("follows must be between 0 and " + User.maxfCount + ": " + follows);
+        }
+    }
+
+    /**
+     * Returns a generated network of the given model ("uniform", "preferential"
+     * or "powerlaw") with default parameters: up to User.maxfCount follows
+     * per user; for the power law, exponent 1 and 1 celebrity per 1000 users
+     * receiving 10% of the follows.
+     */
+    public Network generate(String model, int userCount) {
+        switch (model) {
+            case "uniform":
+                return uniform(userCount, User.maxfCount);
+            case "preferential":
+                return preferentialAttachment(userCount, User.maxfCount / 2);
+            case "powerlaw":
+                return powerLaw(userCount, User.maxfCount, 1.0, Math.max(1, userCount / 1000), 0.1);
+            default:
+                throw new IllegalArgumentException("unknown model " + model);
+        }
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 4) {
+            System.out.println("Usage: java NetworkGenerator uniform|preferential|powerlaw users seed fileName");
+            return;
+        }
+        Network network = new NetworkGenerator(Long.parseLong(args[2])).generate(args[0], Integer.parseInt(args[1]));
+        network.save(args[3]);
+        System.out.println("Saved a " + args[0] + " network of " + network.getUserCount()
+                           + " users to " + args[3] + "; most popular: " + network.mostPopularUser());
+    }
+}
@@ -0,0 +1,119 @@
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Per-operation metrics of a Network: call counts, error counts and latency
+ * histograms, recorded lock-free. Created by Network.enableMetrics().
+ *
+ * The metrics can be read directly, printed with toString(), or published
+ * as JMX MBeans (one per operation) with register(), under the names
+ * "Network:type=Metrics,network=<n>,operation=<operation>".
+ */
+public class NetworkMetrics {
+
+    /** The instrumented operations of Network. */
+    public enum Operation {
+        GET_USER("getUser"),
+        ADD_USER("addUser"),
+        ADD_FOLLOWEE("addFollowee"),
+        RECOMMEND_WHO_TO_FOLLOW("recommendWhoToFollow"),
+        MOST_POPULAR_USER("mostPopularUser"),
+        TO_STRING("toString");
+
+        private final String methodName;
+
+        Operation(String methodName) {
+            this.methodName = methodName;
+        }
+
+        public String getMethodName() {
+            return methodName;
+        }
+    }
+
+    // numbers the registered networks, to tell their MBeans apart
+    private static final AtomicInteger registrations = new AtomicInteger();
+
+    private final OperationMetrics[] operations;
+    private ObjectName[] registeredNames;
+
+    public NetworkMetrics() {
+        Operation[] ops = Operation.values();
+        operations = new OperationMetrics[ops.length];
+        for (int i = 0; i < ops.length; i++) {
+            operations[i] = new OperationMetrics(ops[i].getMethodName());
+        }
+    }
+
+    /** Returns the metrics of the given operation. */
+    public OperationMetrics get(Operation operation) {
+        return operations[operation.ordinal()];
+    }
+
+    /** Records a call of the given operation that started at startNanos (System.nanoTime()). */
+    public void record(Operation operation, long startNanos, boolean failed) {
+        operations[operation.ordinal()].record(startNanos, failed);
+    }
+
+    /** Forgets everything recorded so far. */
+    public void reset() {
+        for (OperationMetrics op : operations) op.reset();
+    }
+
+    /**
+     * Publishes these metrics on the platform MBean server.
+     * Does nothing if they are already published.
+     */
+    public synchronized void register() {
+        if (registeredNames != null) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        int network = registrations.incrementAndGet();
+        ObjectName[] names = new ObjectName[operations.length];
+        try {
+            for (int i = 0; i < operations.length; i++) {
+                names[i] = new ObjectName("Network:type=Metrics,network=" + network
+                                          + ",operation=" + operations[i].getOperation());
+                server.registerMBean(operations[i], names[i]);
+            }
+        }
+        catch (JMException e) {
+            throw new IllegalStateException("Could not register the network metrics", e);
+        }
+        registeredNames = names;
+    }
+
+    /** Removes these metrics from the platform MBean server, if published. */
+    public synchronized void unregister() {
+        if (registeredNames == null) return;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : registeredNames) {
+            try {
+                if (name != null && server.isRegistered(name)) server.unregisterMBean(name);
+            }
+            catch (JMException e) {
+                // already gone; nothing left to clean up
+            }
+        }
+        registeredNames = null;
+    }
+
+    /**
+     * Returns a table of the metrics of every operation, one per line,
+     * with latencies in microseconds.
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "%-22s %10s %8s %10s %10s %10s %10s%n",
+                                "operation", "calls", "errors", "mean(us)", "p50(us)", "p99(us)", "max(us)"));
+        for (OperationMetrics op : operations) {
+            sb.append(String.format(Locale.US, "%-22s %10d %8d %10.1f %10.1f %10.1f %10.1f%n",
+                                    op.getOperation(), op.getCount(), op.getErrorCount(), op.getMeanMicros(),
+                                    op.getP50Micros(), op.getP99Micros(), op.getMaxMicros()));
+        }
+        return sb.toString();
+    }
+}
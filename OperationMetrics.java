@@ -0,0 +1,61 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/** Call count, error count and latency histogram of one Network operation. */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    private final String operation;
+    private final LongAdder errors = new LongAdder();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+
+    public OperationMetrics(String operation) {
+        this.operation = operation;
+    }
+
+    /** Records a call that started at the given System.nanoTime() and just ended. */
+    public void record(long startNanos, boolean failed) {
+        latencies.record(System.nanoTime() - startNanos);
+        if (failed) errors.increment();
+    }
+
+    /** Returns the latency histogram of this operation, in nanoseconds. */
+    public LatencyHistogram latencies() {
+        return latencies;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCount() {
+        return latencies.count();
+    }
+
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    public double getMeanMicros() {
+        return latencies.mean() / 1000;
+    }
+
+    public double getP50Micros() {
+        return latencies.percentile(0.5) / 1000.0;
+    }
+
+    public double getP99Micros() {
+        return latencies.percentile(0.99) / 1000.0;
+    }
+
+    public double getP999Micros() {
+        return latencies.percentile(0.999) / 1000.0;
+    }
+
+    public double getMaxMicros() {
+        return latencies.max() / 1000.0;
+    }
+
+    public void reset() {
+        latencies.reset();
+        errors.reset();
+    }
+}
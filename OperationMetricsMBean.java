@@ -0,0 +1,28 @@
+/**
+ * The JMX management interface of OperationMetrics: call and error counts and
+ * latency statistics of one Network operation. Latencies are in microseconds.
+ */
+public interface OperationMetricsMBean {
+
+    /** Returns the name of the operation, e.g. "recommendWhoToFollow". */
+    String getOperation();
+
+    /** Returns the number of completed calls, including failed ones. */
+    long getCount();
+
+    /** Returns the number of calls that threw an exception. */
+    long getErrorCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    /** Forgets all counts and latencies recorded so far. */
+    void reset();
+}
@@ -0,0 +1,188 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * PageRank of the users of a follow graph: the probability that a walker
+ * who keeps following a random followee of the current user, but jumps to
+ * a random user with probability 1 - damping (or whenever the current user
+ * follows nobody), is at a given user. Unlike follower counts, it only
+ * rewards follows from users who are themselves followed.
+ *
+ * The ranks are computed by power iteration, in parallel over the users:
+ * each iteration pulls, for every user, the rank of each follower divided
+ * by its number of followees, so it reads the followers of the CompactGraph
+ * once and writes nothing shared. The rank of users who follow nobody
+ * (dangling users) is spread over everyone. Starting from the ranks of a
+ * slightly different graph converges in fewer iterations than starting
+ * from uniform ranks.
+ */
+public class PageRank {
+
+    /** The usual damping factor. */
+    public static final double DEFAULT_DAMPING = 0.85;
+
+    private final double[] ranks;
+    private final int iterations;
+
+    private PageRank(double[] ranks, int iterations) {
+        this.ranks = ranks;
+        this.iterations = iterations;
+    }
+
+    /**
+     * Computes the PageRank of the users of the given graph, iterating until
+     * the ranks change by less than tolerance in total (L1 norm), or for
+     * maxIterations iterations. Starts from the given ranks if not null
+     * (users beyond its length start at 1 / nodeCount, and the whole is
+     * rescaled to sum to 1), from uniform ranks otherwise.
+     */
+    public static PageRank compute(CompactGraph graph, double damping, double tolerance,
+                                   int maxIterations, double[] start) {
+        if (damping < 0 || damping >= 1) {
+            throw new IllegalArgumentException("damping must be in [0, 1): " + damping);
+        }
+        int n = graph.nodeCount();
+        if (n == 0) {
+            return new PageRank(new double[0], 0);
+        }
+        double[] rank = initialRanks(n, start);
+        double[] next = new double[n];
+        double[] share = new double[n];     // rank of u / followees of u, or 0 if dangling
+        int[] inSources = graph.inSources();
+        int iteration = 0;
+        while (iteration < maxIterations) {
+            iteration++;
+            double dangling = 0;
+            for (int u = 0; u < n; u++) {
+                int degree = graph.outDegree(u);
+                if (degree == 0) {
+                    dangling += rank[u];
+                    share[u] = 0;
+                } else {
+                    share[u] = rank[u] / degree;
+                }
+            }
+            double base = (1 - damping + damping * dangling) / n;
+            double[] into = next;
+            IntStream.range(0, n).parallel().forEach(v -> {
+                double sum = 0;
+                for (int i = graph.inStart(v), end = graph.inStart(v + 1); i < end; i++) {
+                    sum += share[inSources[i]];
+                }
+                into[v] = base + damping * sum;
+            });
+            double change = 0;
+            for (int u = 0; u < n; u++) {
+                change += Math.abs(next[u] - rank[u]);
+            }
+            double[] swap = rank;
+            rank = next;
+            next = swap;
+            if (change < tolerance) {
+                break;
+            }
+        }
+        return new PageRank(rank, iteration);
+    }
+
+    private static double[] initialRanks(int n, double[] start) {
+        double[] rank = new double[n];
+        if (start == null) {
+            Arrays.fill(rank, 1.0 / n);
+            return rank;
+        }
+        double total = 0;
+        for (int u = 0; u < n; u++) {
+            rank[u] = (u < start.length) ? start[u] : 1.0 / n;
+            total += rank[u];
+        }
+        for (int u = 0; u < n; u++) {
+            rank[u] /= total;
+        }
+        return rank;
+    }
+
+    /** Returns the number of iterations the computation took. */
+    public int iterations() {
+        return iterations;
+    }
+
+    /** Returns the rank of the given user. */
+    public double rank(int u) {
+        return ranks[u];
+    }
+
+    /** Returns the ranks of all users, which sum to 1. Don't modify it. */
+    public double[] ranks() {
+        return ranks;
+    }
+
+    /** Returns the ids of the k users with the highest ranks, best first, ties going to the lower id. */
+    public int[] top(int k) {
+        TopK top = new TopK(k);
+        for (int u = 0; u < ranks.length; u++) {
+            top.offer(u, ranks[u]);
+        }
+        return top.drain(null);
+    }
+
+    /**
+     * Times PageRank on a random graph of args[0] users (default 1000000)
+     * following args[1] random users each (default 10), from uniform ranks
+     * and then warm-started after args[2] random follows (default 1000).
+     * Then checks Network.mostPopularUser(Mode.PAGERANK) on a small network.
+     */
+    public static void main(String[] args) {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        int degree = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+        int changes = (args.length > 2) ? Integer.parseInt(args[2]) : 1000;
+        Random random = new Random(1);
+        IdLists followees = new IdLists(n);
+        IdLists followers = new IdLists(n);
+        for (int u = 0; u < n; u++) {
+            for (int i = 0; i < degree; i++) {
+                follow(followees, followers, u, random.nextInt(n));
+            }
+        }
+        CompactGraph graph = new CompactGraph(followees, followers, n);
+        long start = System.nanoTime();
+        PageRank cold = compute(graph, DEFAULT_DAMPING, 1e-8, 100, null);
+        System.out.printf("%d users, %d follows: %d iterations in %.0f ms%n", n, graph.edgeCount(),
+                          cold.iterations(), (System.nanoTime() - start) / 1e6);
+
+        for (int i = 0; i < changes; i++) {
+            follow(followees, followers, random.nextInt(n), random.nextInt(n));
+        }
+        graph = new CompactGraph(followees, followers, n);
+        start = System.nanoTime();
+        PageRank warm = compute(graph, DEFAULT_DAMPING, 1e-8, 100, cold.ranks());
+        System.out.printf("after %d more follows, warm-started: %d iterations in %.0f ms%n", changes,
+                          warm.iterations(), (System.nanoTime() - start) / 1e6);
+        double total = 0;
+        for (double r : warm.ranks()) total += r;
+        if (Math.abs(total - 1) > 1e-6) throw new AssertionError("ranks sum to " + total);
+
+        // in a network, the user followed by everyone is the most popular by both measures
+        Network network = new Network(100);
+        for (int u = 0; u < 100; u++) {
+            network.addUser("User" + u);
+        }
+        for (int u = 0; u < 100; u++) {
+            network.addFollowee("User" + u, "User42");
+            network.addFollowee("User" + u, "User" + random.nextInt(100));
+        }
+        String byPageRank = network.mostPopularUser(Network.Mode.PAGERANK);
+        if (!"User42".equals(byPageRank) || !"User42".equals(network.mostPopularUser())
+            || !byPageRank.equals(network.topUsersByPageRank(1)[0])) {
+            throw new AssertionError("most popular by PageRank is " + byPageRank + ", not User42");
+        }
+    }
+
+    private static void follow(IdLists followees, IdLists followers, int u, int v) {
+        if (u != v && !followees.contains(u, v)) {
+            followees.add(u, v);
+            followers.add(v, u);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Shortest follow paths between users, by bidirectional breadth-first
+ * search: forward from the source along followees and backward from the
+ * target along followers, a level at a time, always growing the smaller
+ * frontier, until the two meet. With a branching factor of b and a distance
+ * of d, that visits about 2 b^(d/2) users instead of b^d.
+ *
+ * The per-user arrays are allocated once and reused by every search: each
+ * search gets a new stamp, and a user counts as visited by a search only if
+ * its stamp is the search's, so nothing has to be cleared between searches.
+ * Not thread-safe.
+ *
+ * Users are identified by their ids (indices) in the network.
+ */
+public class PathFinder {
+
+    private final int[] forwardStamp;
+    private final int[] backwardStamp;
+    private final int[] forwardParent;     // the user before, on a path from the source
+    private final int[] backwardParent;    // the user after, on a path to the target
+    private final int[] forwardQueue;
+    private final int[] backwardQueue;
+    private int stamp;
+    private int queueTail;      // the tail of the queue expanded last
+
+    /** Creates a path finder for networks of up to maxUserCount users. */
+    public PathFinder(int maxUserCount) {
+        forwardStamp = new int[maxUserCount];
+        backwardStamp = new int[maxUserCount];
+        forwardParent = new int[maxUserCount];
+        backwardParent = new int[maxUserCount];
+        forwardQueue = new int[maxUserCount];
+        backwardQueue = new int[maxUserCount];
+    }
+
+    /**
+     * Returns the number of follows on a shortest path from user source to
+     * user target (0 if they're the same), or -1 if there is no path.
+     */
+    public int distance(IdLists followees, IdLists followers, int source, int target) {
+        int meet = search(followees, followers, source, target);
+        return (meet < 0) ? -1 : pathLength(meet);
+    }
+
+    /**
+     * Returns the ids of the users on a shortest path from user source to
+     * user target, both included, or an empty array if there is no path.
+     */
+    public int[] shortestPath(IdLists followees, IdLists followers, int source, int target) {
+        int meet = search(followees, followers, source, target);
+        if (meet < 0) {
+            return new int[0];
+        }
+        int[] path = new int[pathLength(meet) + 1];
+        int i = 0;
+        for (int u = meet; u != -1; u = forwardParent[u]) {
+            path[i++] = u;
+        }
+        // the half from the source was read backwards
+        for (int l = 0, r = i - 1; l < r; l++, r--) {
+            int swap = path[l];
+            path[l] = path[r];
+            path[r] = swap;
+        }
+        for (int u = backwardParent[meet]; u != -1; u = backwardParent[u]) {
+            path[i++] = u;
+        }
+        return path;
+    }
+
+    private int pathLength(int meet) {
+        int length = 0;
+        for (int u = meet; forwardParent[u] != -1; u = forwardParent[u]) length++;
+        for (int u = meet; backwardParent[u] != -1; u = backwardParent[u]) length++;
+        return length;
+    }
+
+    // returns a user on a shortest path from source to target, or -1 if there is none
+    private int search(IdLists followees, IdLists followers, int source, int target) {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(forwardStamp, 0);
+            Arrays.fill(backwardStamp, 0);
+            stamp = 1;
+        }
+        forwardStamp[source] = stamp;
+        forwardParent[source] = -1;
+        backwardStamp[target] = stamp;
+        backwardParent[target] = -1;
+        if (source == target) {
+            return source;
+        }
+        forwardQueue[0] = source;
+        backwardQueue[0] = target;
+        // the current levels are queue[head .. tail)
+        int forwardHead = 0;
+        int forwardTail = 1;
+        int backwardHead = 0;
+        int backwardTail = 1;
+        while (forwardHead < forwardTail && backwardHead < backwardTail) {
+            int meet;
+            if (forwardTail - forwardHead <= backwardTail - backwardHead) {
+                int end = forwardTail;
+                meet = expand(followees, forwardQueue, forwardHead, end, forwardStamp, forwardParent,
+                              backwardStamp);
+                forwardHead = end;
+                forwardTail = queueTail;
+            } else {
+                int end = backwardTail;
+                meet = expand(followers, backwardQueue, backwardHead, end, backwardStamp, backwardParent,
+                              forwardStamp);
+                backwardHead = end;
+                backwardTail = queueTail;
+            }
+            if (meet >= 0) {
+                return meet;
+            }
+        }
+        return -1;
+    }
+
+    // visits the unvisited neighbours of the level queue[head .. end), appending
+    // them to the queue (whose new tail goes to queueTail), and returns the first
+    // one the other side has visited, or -1; no user was visited by both sides
+    // before, so the other side reached any such neighbour in its last level
+    // (else it would have visited u from it), and they all lie on shortest paths
+    private int expand(IdLists lists, int[] queue, int head, int end, int[] stamps, int[] parents,
+                       int[] otherStamps) {
+        int tail = end;
+        for (int q = head; q < end; q++) {
+            int u = queue[q];
+            int[] next = lists.array(u);
+            for (int i = 0, size = lists.size(u); i < size; i++) {
+                int v = next[i];
+                if (stamps[v] == stamp) continue;
+                stamps[v] = stamp;
+                parents[v] = u;
+                if (otherStamps[v] == stamp) {
+                    queueTail = tail;
+                    return v;
+                }
+                queue[tail++] = v;
+            }
+        }
+        queueTail = tail;
+        return -1;
+    }
+
+    /**
+     * Times shortest paths between random users of a random graph of args[0]
+     * users (default 1000000) following args[1] random users each (default 10).
+     */
+    public static void main(String[] args) {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        int degree = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+        Random random = new Random(1);
+        IdLists followees = new IdLists(n);
+        IdLists followers = new IdLists(n);
+        for (int u = 0; u < n; u++) {
+            for (int i = 0; i < degree; i++) {
+                int v = random.nextInt(n);
+                if (v != u && !followees.contains(u, v)) {
+                    followees.add(u, v);
+                    followers.add(v, u);
+                }
+            }
+        }
+        PathFinder finder = new PathFinder(n);
+        int queries = 1000;
+        long total = 0;
+        long start = System.nanoTime();
+        for (int q = 0; q < queries; q++) {
+            total += finder.distance(followees, followers, random.nextInt(n), random.nextInt(n));
+        }
+        System.out.printf("%d users: average distance %.2f, %.3f ms per query%n", n,
+                          (double) total / queries, (System.nanoTime() - start) / 1e6 / queries);
+    }
+}
@@ -0,0 +1,73 @@
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Monte Carlo estimates of the personalized PageRank of a user: the
+ * probability that a walker starting from that user, who keeps following a
+ * random followee but goes back home with probability 1 - damping at each
+ * step, is at a given user. Users many follows away still get some of it,
+ * unlike with mutual followee counts, which only look two follows away.
+ *
+ * The estimate is the number of visits of each user over many short random
+ * walks from the source; a walk ends when it goes back home, reaches a user
+ * who follows nobody, or has taken walkLength steps. More and longer walks
+ * give better estimates in proportionally more time. Walks run in parallel,
+ * in batches of BATCH_SIZE, each with its own random generator split from
+ * the seed beforehand, so the counts only depend on the seed, not on the
+ * number of threads.
+ *
+ * Users are identified by their ids (indices) in the network.
+ */
+public class PersonalizedPageRank {
+
+    private static final int BATCH_SIZE = 256;
+
+    // don't instantiate
+    private PersonalizedPageRank() { }
+
+    /**
+     * Returns the number of visits of each user other than source over the
+     * given number of random walks from source, in the graph whose follows
+     * are given by followees.
+     */
+    public static IntIntHashMap visits(IdLists followees, int source, int walks, int walkLength,
+                                       double damping, long seed) {
+        if (walks < 0 || walkLength < 0) {
+            throw new IllegalArgumentException("walks and walkLength must be non-negative: "
+                                               + walks + ", " + walkLength);
+        }
+        int batches = (walks + BATCH_SIZE - 1) / BATCH_SIZE;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[batches];
+        for (int b = 0; b < batches; b++) {
+            randoms[b] = root.split();
+        }
+        IntIntHashMap[] counts = new IntIntHashMap[batches];
+        IntStream.range(0, batches).parallel().forEach(b -> {
+            int count = Math.min(BATCH_SIZE, walks - b * BATCH_SIZE);
+            counts[b] = walk(followees, source, count, walkLength, damping, randoms[b]);
+        });
+        IntIntHashMap total = new IntIntHashMap();
+        for (IntIntHashMap c : counts) {
+            for (int s = 0; s < c.slots(); s++) {
+                if (c.keyAt(s) >= 0) total.addTo(c.keyAt(s), c.valueAt(s));
+            }
+        }
+        return total;
+    }
+
+    private static IntIntHashMap walk(IdLists followees, int source, int walks, int walkLength,
+                                      double damping, SplittableRandom random) {
+        IntIntHashMap counts = new IntIntHashMap();
+        for (int w = 0; w < walks; w++) {
+            int at = source;
+            for (int step = 0; step < walkLength; step++) {
+                int degree = followees.size(at);
+                if (degree == 0 || random.nextDouble() >= damping) break;
+                at = followees.get(at, random.nextInt(degree));
+                if (at != source) counts.addTo(at, 1);
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,127 @@
+import java.util.stream.IntStream;
+
+/**
+ * HyperLogLog sketches (see HyperLogLog) of the users within one and two
+ * follows of every user of a network, for estimating reach without
+ * walking and deduplicating followees of followees. Each user costs two
+ * sketches of 2^precision bytes, whatever its number of followees.
+ *
+ * The 1-hop sketch of a user holds its followees; its 2-hop sketch is the
+ * merge of the 1-hop sketches of its followees, plus the followees
+ * themselves, so it may include the user itself.
+ *
+ * A follow only adds items, so it updates the sketches at once: A following
+ * B adds B to the 1-hop sketch of A and to the 2-hop sketches of A and of
+ * the followers of A, and merges the 1-hop sketch of B into the 2-hop sketch
+ * of A. Items can't be removed from a sketch, so an unfollow only marks the
+ * sketches it affects as stale; they are recomputed when next read, or all
+ * at once, in parallel, by refresh().
+ *
+ * Users are identified by their ids (indices) in the network.
+ */
+public class ReachSketches {
+
+    private final int precision;
+    private final HyperLogLog[] oneHop;     // null until the user follows someone
+    private final HyperLogLog[] twoHop;
+    private final boolean[] oneHopStale;
+    private final boolean[] twoHopStale;
+
+    /** Creates empty sketches of the given precision for up to maxUserCount users. */
+    public ReachSketches(int precision, int maxUserCount) {
+        new HyperLogLog(precision);     // validates the precision
+        this.precision = precision;
+        this.oneHop = new HyperLogLog[maxUserCount];
+        this.twoHop = new HyperLogLog[maxUserCount];
+        this.oneHopStale = new boolean[maxUserCount];
+        this.twoHopStale = new boolean[maxUserCount];
+    }
+
+    /**
+     * Computes the sketches of the first userCount users from their followees,
+     * in parallel: first all 1-hop sketches, then all 2-hop sketches.
+     */
+    public void rebuild(IdLists followees, int userCount) {
+        IntStream.range(0, userCount).parallel().forEach(u -> computeOneHop(u, followees));
+        IntStream.range(0, userCount).parallel().forEach(u -> computeTwoHop(u, followees));
+    }
+
+    /** Recomputes all stale sketches, in parallel. */
+    public void refresh(IdLists followees) {
+        int n = followees.userCount();
+        IntStream.range(0, n).parallel().filter(u -> oneHopStale[u]).forEach(u -> computeOneHop(u, followees));
+        IntStream.range(0, n).parallel().filter(u -> twoHopStale[u]).forEach(u -> computeTwoHop(u, followees));
+    }
+
+    private void computeOneHop(int user, IdLists followees) {
+        HyperLogLog sketch = sketch(oneHop, user);
+        sketch.clear();
+        int[] f = followees.array(user);
+        for (int i = followees.size(user) - 1; i >= 0; i--) {
+            sketch.add(HyperLogLog.hash(f[i]));
+        }
+        oneHopStale[user] = false;
+    }
+
+    // expects the 1-hop sketches of the user's followees to be up to date
+    private void computeTwoHop(int user, IdLists followees) {
+        HyperLogLog sketch = sketch(twoHop, user);
+        sketch.clear();
+        int[] f = followees.array(user);
+        for (int i = followees.size(user) - 1; i >= 0; i--) {
+            sketch.add(HyperLogLog.hash(f[i]));
+            if (oneHop[f[i]] != null) sketch.merge(oneHop[f[i]]);
+        }
+        twoHopStale[user] = false;
+    }
+
+    private HyperLogLog sketch(HyperLogLog[] sketches, int user) {
+        if (sketches[user] == null) sketches[user] = new HyperLogLog(precision);
+        return sketches[user];
+    }
+
+    /**
+     * Updates the sketches after user a started following user b.
+     * followersOfA lists the followers of a.
+     */
+    public void followed(int a, int b, int[] followersOfA, int size, IdLists followees) {
+        long hash = HyperLogLog.hash(b);
+        sketch(oneHop, a).add(hash);
+        sketch(twoHop, a).add(hash);
+        if (oneHopStale[b]) computeOneHop(b, followees);
+        if (oneHop[b] != null) twoHop[a].merge(oneHop[b]);
+        for (int i = 0; i < size; i++) {
+            sketch(twoHop, followersOfA[i]).add(hash);
+        }
+    }
+
+    /**
+     * Marks the sketches as stale after user a stopped following user b.
+     * followersOfA lists the followers of a.
+     */
+    public void unfollowed(int a, int[] followersOfA, int size) {
+        oneHopStale[a] = true;
+        twoHopStale[a] = true;
+        for (int i = 0; i < size; i++) {
+            twoHopStale[followersOfA[i]] = true;
+        }
+    }
+
+    /** Returns the estimated number of users the given user follows. */
+    public long oneHopReach(int user, IdLists followees) {
+        if (oneHopStale[user]) computeOneHop(user, followees);
+        return (oneHop[user] == null) ? 0 : oneHop[user].estimate();
+    }
+
+    /** Returns the estimated number of distinct users within two follows of the given user. */
+    public long twoHopReach(int user, IdLists followees) {
+        if (twoHopStale[user]) {
+            int[] f = followees.array(user);
+            for (int i = followees.size(user) - 1; i >= 0; i--) {
+                if (oneHopStale[f[i]]) computeOneHop(f[i], followees);
+            }
+            computeTwoHop(user, followees);
+        }
+        return (twoHop[user] == null) ? 0 : twoHop[user].estimate();
+    }
+}
@@ -0,0 +1,26 @@
+/** A user recommended to follow, with the number of followees it shares with the recipient. */
+public class Recommendation {
+
+    private final String name;
+    private final int mutualCount;
+
+    public Recommendation(String name, int mutualCount) {
+        this.name = name;
+        this.mutualCount = mutualCount;
+    }
+
+    /** Returns the name of the recommended user. */
+    public String getName() {
+        return name;
+    }
+
+    /** Returns the number of users followed by both the recipient and the recommended user. */
+    public int getMutualCount() {
+        return mutualCount;
+    }
+
+    /** Returns the name and the mutual count, e.g. "Charlie (2)". */
+    public String toString() {
+        return name + " (" + mutualCount + ")";
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A bounded, least-recently-used cache of recommendWhoToFollow results,
+ * keyed by user id.
+ *
+ * Instead of being flushed on every change, entries are invalidated through
+ * version counters: every user has a version, which the network bumps
+ * (invalidate()) whenever a follow change can alter that user's
+ * recommendation, and an entry is only used if it was computed at the
+ * user's current version. When A starts or stops following B, only the
+ * recommendations of A and of the followers of B can change, since the
+ * mutual followees of any other pair of users stay the same.
+ * A null result (no candidate at all) is also dropped once users are added.
+ *
+ * Not thread-safe, like Network.
+ */
+public class RecommendationCache {
+
+    private static final class Entry {
+        final String result;
+        final long version;     // version of the user when the result was computed
+        final int userCount;    // users in the network when the result was computed
+
+        Entry(String result, long version, int userCount) {
+            this.result = result;
+            this.version = version;
+            this.userCount = userCount;
+        }
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<Integer, Entry> entries;
+    private final long[] versions;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Creates a cache that holds at most the given number of results,
+     * for a network of up to maxUserCount users.
+     */
+    public RecommendationCache(int capacity, int maxUserCount) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.versions = new long[maxUserCount];
+        this.entries = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                if (size() > RecommendationCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns true and sets result[0] to the cached recommendation for the
+     * given user if there is a valid one; returns false otherwise.
+     */
+    public boolean lookup(int user, int userCount, String[] result) {
+        Entry entry = entries.get(user);
+        if (entry != null && (entry.version != versions[user]
+                              || (entry.result == null && entry.userCount != userCount))) {
+            entries.remove(user);
+            invalidations++;
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+            return false;
+        }
+        hits++;
+        result[0] = entry.result;
+        return true;
+    }
+
+    /** Caches the recommendation for the given user, computed at its current version. */
+    public void put(int user, int userCount, String result) {
+        entries.put(user, new Entry(result, versions[user], userCount));
+    }
+
+    /** Marks the cached recommendation of the given user, if any, as stale. */
+    public void invalidate(int user) {
+        versions[user]++;
+    }
+
+    /** Drops every cached recommendation. */
+    public void clear() {
+        entries.clear();
+    }
+
+    /** Returns the maximum number of cached recommendations. */
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Returns the number of cached recommendations, including stale ones. */
+    public int size() {
+        return entries.size();
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    /** Returns the number of entries dropped to make room for newer ones. */
+    public long evictions() {
+        return evictions;
+    }
+
+    /** Returns the number of entries found stale and dropped. */
+    public long invalidations() {
+        return invalidations;
+    }
+
+    /** Returns the fraction of lookups that were hits, or 0 if there were none. */
+    public double hitRate() {
+        long lookups = hits + misses;
+        return (lookups == 0) ? 0 : (double) hits / lookups;
+    }
+
+    /** Returns the statistics of this cache, e.g. for sizing it. */
+    public String toString() {
+        return String.format(Locale.US,
+                             "RecommendationCache: size %d/%d, hits %d, misses %d (hit rate %.1f%%), evictions %d, invalidations %d",
+                             size(), capacity, hits, misses, 100 * hitRate(), evictions, invalidations);
+    }
+}
@@ -7,10 +7,18 @@
  *
  ******************************************************************************/
 
+import java.io.BufferedWriter;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  *  <p><b>Overview.</b>
@@ -52,6 +60,29 @@ import java.util.Locale;
  *       {@code print()} so that text will appear immediately in the terminal.
  *  </ul>
  *  <p>
+ *  <b>Buffered mode.</b>
+ *  Flushing after every line costs a system call per line, which dominates
+ *  programs that print many short lines (such as a large network report).
+ *  Calling {@link #setBufferedMode(int)} switches {@code StdOut} to a large
+ *  buffer that is written out only when it fills up, when {@link #flush()}
+ *  is called, periodically (see {@link #setBufferedMode(int, long)}), and
+ *  when the JVM shuts down. {@link #setAutoFlushMode()} restores the default.
+ *  In either mode, the integer {@code println()} and {@code print()} methods
+ *  format their argument into a reusable buffer instead of allocating a
+ *  {@code String}.
+ *  <p>
+ *  <b>Parallel mode.</b>
+ *  When many threads print at once, they all contend on the single
+ *  underlying writer and their output interleaves. After
+ *  {@link #setParallelMode(int)}, every thread prints into a buffer of its
+ *  own, and each completed line is handed as a whole to a single writer
+ *  thread through a bounded queue, so lines are never split or mixed.
+ *  A thread may also bracket its output with {@link #beginTask(long)} and
+ *  {@link #endTask()}; the output of such tasks is written as one block,
+ *  in increasing task index order ({@code 0, 1, 2, ...}), no matter which
+ *  thread finishes first. {@link #setSerialMode()} writes out everything
+ *  still queued and goes back to printing directly.
+ *  <p>
  *  <b>Reference.</b>
  *  For additional documentation,
  *  see <a href="https://introcs.cs.princeton.edu/15inout">Section 1.5</a> of
@@ -70,7 +101,23 @@ public final class StdOut {
     private static final Locale LOCALE = Locale.US;
 
     // send output here
-    private static PrintWriter out;
+    private static volatile PrintWriter out;
+
+    // true if every call to print() or println() flushes standard output
+    private static volatile boolean autoFlush = true;
+
+    // scratch buffer for formatting integers without allocating a String;
+    // also the lock that guards it (20 chars fit Long.MIN_VALUE)
+    private static final char[] digits = new char[20];
+
+    // flushes buffered output at a fixed rate; null unless requested
+    private static Timer flusher;
+
+    // true once the shutdown hook that flushes buffered output is registered
+    private static boolean shutdownHookAdded = false;
+
+    // per-thread buffers and the writer thread; null unless in parallel mode
+    private static volatile ParallelOutput parallel;
 
     // this is called before invoking any methods
     static {
@@ -85,11 +132,449 @@ public final class StdOut {
     // don't instantiate
     private StdOut() { }
 
+   /**
+     * Switches standard output to buffered mode: output is collected in a
+     * buffer of the given size and written out only when the buffer fills up,
+     * when {@link #flush()} is called, or when the JVM shuts down.
+     *
+     * @param bufferSize the size of the output buffer, in characters
+     * @throws IllegalArgumentException if {@code bufferSize <= 0}
+     */
+    public static void setBufferedMode(int bufferSize) {
+        setBufferedMode(bufferSize, 0);
+    }
+
+   /**
+     * Switches standard output to buffered mode, as in {@link #setBufferedMode(int)},
+     * and also flushes it every {@code flushIntervalMillis} milliseconds
+     * so that output never lags by more than that.
+     *
+     * @param bufferSize the size of the output buffer, in characters
+     * @param flushIntervalMillis the time between two periodic flushes,
+     *        in milliseconds; 0 for no periodic flushing
+     * @throws IllegalArgumentException if {@code bufferSize <= 0}
+     *         or {@code flushIntervalMillis < 0}
+     */
+    public static synchronized void setBufferedMode(int bufferSize,
+                                                    long flushIntervalMillis) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("buffer size must be positive: "
+                                               + bufferSize);
+        }
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("flush interval must be non-negative: "
+                                               + flushIntervalMillis);
+        }
+        try {
+            PrintWriter buffered = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(System.out, CHARSET_NAME), bufferSize), false);
+            replaceWriter(buffered, false);
+        }
+        catch (UnsupportedEncodingException e) {
+            System.out.println(e);
+            return;
+        }
+        addShutdownHook();
+        if (flushIntervalMillis > 0) {
+            flusher = new Timer("StdOut-flusher", true);
+            flusher.scheduleAtFixedRate(new TimerTask() {
+                public void run() {
+                    flush();
+                }
+            }, flushIntervalMillis, flushIntervalMillis);
+        }
+    }
+
+   /**
+     * Switches standard output back to the default mode, in which
+     * every call to {@code print()} and {@code println()} flushes it.
+     * Any buffered output is flushed first.
+     */
+    public static synchronized void setAutoFlushMode() {
+        try {
+            PrintWriter flushing = new PrintWriter(
+                    new OutputStreamWriter(System.out, CHARSET_NAME), true);
+            replaceWriter(flushing, true);
+        }
+        catch (UnsupportedEncodingException e) {
+            System.out.println(e);
+        }
+    }
+
+    // makes sure buffered and queued output is written out when the JVM exits
+    private static void addShutdownHook() {
+        if (shutdownHookAdded) return;
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            setSerialMode();
+            flush();
+        }, "StdOut-shutdown-flush"));
+        shutdownHookAdded = true;
+    }
+
+   /**
+     * Switches standard output to parallel mode: each thread prints into
+     * its own buffer, and each completed line is passed to a single writer
+     * thread through a queue holding at most {@code queueCapacity} records.
+     * A thread that prints while the queue is full waits for the writer.
+     * The mode of the underlying output (autoflush or buffered) is kept;
+     * in autoflush mode the writer thread flushes whenever it runs out of
+     * queued records. Task indices (see {@link #beginTask(long)}) restart at 0.
+     * The capacity only bounds the queue: tasks that end before a lower
+     * index are held by the writer thread until that index is written, with
+     * no limit on their number or size.
+     *
+     * @param queueCapacity the maximum number of records waiting to be written
+     * @throws IllegalArgumentException if {@code queueCapacity <= 0}
+     */
+    public static synchronized void setParallelMode(int queueCapacity) {
+        if (queueCapacity <= 0) {
+            throw new IllegalArgumentException("queue capacity must be positive: "
+                                               + queueCapacity);
+        }
+        setSerialMode();
+        addShutdownHook();
+        parallel = new ParallelOutput(queueCapacity);
+    }
+
+   /**
+     * Leaves parallel mode: hands what is left in the buffer of every thread
+     * (partial lines, and the output of tasks never ended) to the writer
+     * thread, waits until it has written every queued record, including
+     * tasks still waiting for a lower index, and then prints directly
+     * again. Call this once the printing threads are done; does nothing if
+     * standard output is not in parallel mode.
+     */
+    public static synchronized void setSerialMode() {
+        ParallelOutput p = parallel;
+        if (p == null) return;
+        parallel = null;
+        p.stop();
+    }
+
+   /**
+     * Returns true if standard output is in parallel mode.
+     *
+     * @return {@code true} if standard output is in parallel mode
+     */
+    public static boolean isParallel() {
+        return parallel != null;
+    }
+
+   /**
+     * Starts collecting the calling thread's output as the task with the
+     * given index. Nothing the thread prints is written until it calls
+     * {@link #endTask()}; the output of tasks is then written in increasing
+     * index order, starting at 0, so every index must eventually be ended
+     * exactly once.
+     *
+     * @param taskIndex the position of this task in the output
+     * @throws IllegalStateException if not in parallel mode, or if the
+     *         calling thread already has a task open
+     * @throws IllegalArgumentException if {@code taskIndex < 0}
+     */
+    public static void beginTask(long taskIndex) {
+        if (taskIndex < 0) {
+            throw new IllegalArgumentException("task index must be non-negative: "
+                                               + taskIndex);
+        }
+        ParallelOutput p = parallel;
+        if (p == null) {
+            throw new IllegalStateException("beginTask requires parallel mode");
+        }
+        LocalBuffer buffer = p.local.get();
+        if (buffer.task >= 0) {
+            throw new IllegalStateException("task " + buffer.task + " is still open");
+        }
+        buffer.submitLine(p);
+        buffer.task = taskIndex;
+    }
+
+   /**
+     * Ends the calling thread's current task and hands everything it
+     * printed since {@link #beginTask(long)} to the writer thread.
+     *
+     * @throws IllegalStateException if not in parallel mode, or if the
+     *         calling thread has no task open
+     */
+    public static void endTask() {
+        ParallelOutput p = parallel;
+        if (p == null) {
+            throw new IllegalStateException("endTask requires parallel mode");
+        }
+        LocalBuffer buffer = p.local.get();
+        if (buffer.task < 0) throw new IllegalStateException("no task is open");
+        long task = buffer.task;
+        buffer.task = -1;
+        p.submit(new Record(buffer.take(), task));
+    }
+
+    // the writer the calling thread should print to
+    private static PrintWriter writer() {
+        ParallelOutput p = parallel;
+        return (p == null) ? out : p.local.get().writer;
+    }
+
+    // called after print() on the given writer
+    private static void printed(PrintWriter writer) {
+        ParallelOutput p = parallel;
+        if (p != null && writer != out) p.local.get().submitCompletedLines(p);
+        else if (writer == out && autoFlush) writer.flush();
+    }
+
+    // called after println() on the given writer
+    private static void printedLine(PrintWriter writer) {
+        ParallelOutput p = parallel;
+        if (p != null && writer != out) p.local.get().submitLine(p);
+    }
+
+    // flushes and swaps in the given writer, stopping any periodic flushing
+    private static void replaceWriter(PrintWriter writer, boolean flushEachCall) {
+        if (flusher != null) {
+            flusher.cancel();
+            flusher = null;
+        }
+        synchronized (digits) {
+            out.flush();
+            out = writer;
+            autoFlush = flushEachCall;
+        }
+    }
+
+   /**
+     * Returns true if standard output is in buffered mode.
+     *
+     * @return {@code true} if standard output is buffered;
+     *         {@code false} if it is flushed after every call
+     */
+    public static boolean isBuffered() {
+        return !autoFlush;
+    }
+
+   /**
+     * Writes out any buffered output. In the default mode there is never
+     * any buffered output, so this does nothing. In parallel mode, the
+     * writer thread flushes once it has written the lines queued so far.
+     */
+    public static void flush() {
+        ParallelOutput p = parallel;
+        if (p != null) p.submit(Record.FLUSH);
+        else out.flush();
+    }
+
+    // writes the decimal representation of x without allocating a String
+    private static void writeDigits(PrintWriter writer, char[] scratch, long x) {
+        int pos = scratch.length;
+        long rest = x;
+        do {
+            int digit = (int) (rest % 10);
+            scratch[--pos] = (char) ('0' + (digit < 0 ? -digit : digit));
+            rest /= 10;
+        } while (rest != 0);
+        if (x < 0) scratch[--pos] = '-';
+        writer.write(scratch, pos, scratch.length - pos);
+    }
+
+    // prints x, then the line separator if requested, flushing in autoflush mode
+    private static void printInteger(long x, boolean newline) {
+        ParallelOutput p = parallel;
+        if (p != null) {
+            LocalBuffer buffer = p.local.get();
+            writeDigits(buffer.writer, buffer.digits, x);
+            if (newline) {
+                buffer.writer.println();
+                buffer.submitLine(p);
+            }
+            return;
+        }
+        synchronized (digits) {
+            PrintWriter writer = out;
+            writeDigits(writer, digits, x);
+            if (newline) writer.println();
+            else if (autoFlush) writer.flush();
+        }
+    }
+
+    // a piece of output on its way to the writer thread
+    private static final class Record {
+        static final Record FLUSH = new Record("", -1);
+        static final Record STOP = new Record("", -1);
+
+        final String text;
+        final long task;   // task index, or -1 if written as soon as it arrives
+
+        Record(String text, long task) {
+            this.text = text;
+            this.task = task;
+        }
+    }
+
+    // the output of one thread that has not been handed to the writer yet
+    private static final class LocalBuffer {
+        final StringWriter text = new StringWriter();
+        final PrintWriter writer = new PrintWriter(text, false);
+        final char[] digits = new char[20];
+        long task = -1;     // index of the open task, or -1
+
+        // returns the collected output and empties the buffer; the lock is
+        // the one the PrintWriter takes, so that stop() can take the output
+        // of another thread
+        String take() {
+            synchronized (text) {
+                StringBuffer sb = text.getBuffer();
+                String s = sb.toString();
+                sb.setLength(0);
+                return s;
+            }
+        }
+
+        // hands the completed lines to the writer, unless a task is open
+        void submitLine(ParallelOutput p) {
+            if (task < 0 && text.getBuffer().length() > 0) {
+                p.submit(new Record(take(), -1));
+            }
+        }
+
+        // hands the lines completed so far to the writer, keeping the last
+        // one if it isn't, unless a task is open
+        void submitCompletedLines(ParallelOutput p) {
+            if (task >= 0) return;
+            String lines;
+            synchronized (text) {
+                StringBuffer sb = text.getBuffer();
+                int end = sb.lastIndexOf("\n") + 1;
+                lines = sb.substring(0, end);
+                sb.delete(0, end);
+            }
+            if (!lines.isEmpty()) p.submit(new Record(lines, -1));
+        }
+    }
+
+    // the queue and the single thread that writes all records to out
+    private static final class ParallelOutput implements Runnable {
+        // how long stop() waits for the writer once the caller is interrupted
+        private static final long STOP_GRACE_MILLIS = 1000;
+
+        // the buffers of all threads, so that stop() can write out what they hold
+        private final ConcurrentLinkedQueue<LocalBuffer> buffers =
+                new ConcurrentLinkedQueue<>();
+        final ThreadLocal<LocalBuffer> local = ThreadLocal.withInitial(() -> {
+            LocalBuffer buffer = new LocalBuffer();
+            buffers.add(buffer);
+            return buffer;
+        });
+        private final BlockingQueue<Record> queue;
+        private final Thread thread;
+
+        // completed tasks waiting for a lower index, and the next index due
+        private final PriorityQueue<Record> waiting =
+                new PriorityQueue<>((a, b) -> Long.compare(a.task, b.task));
+        private long nextTask = 0;
+
+        ParallelOutput(int queueCapacity) {
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+            thread = new Thread(this, "StdOut-writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void submit(Record record) {
+            try {
+                queue.put(record);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                // don't lose the output; write it directly, out of order
+                synchronized (digits) {
+                    out.print(record.text);
+                }
+            }
+        }
+
+        // writes what the threads still hold and everything queued, and waits
+        // for the writer thread to finish; the records are queued even if the
+        // calling thread is interrupted, but then the wait lasts at most
+        // STOP_GRACE_MILLIS, and the interrupt is kept
+        void stop() {
+            boolean interrupted = Thread.interrupted();
+            for (LocalBuffer buffer : buffers) {
+                String rest = buffer.take();
+                buffer.task = -1;
+                if (!rest.isEmpty()) {
+                    interrupted |= putUninterruptibly(new Record(rest, -1));
+                }
+            }
+            interrupted |= putUninterruptibly(Record.STOP);
+            long deadline = System.currentTimeMillis() + STOP_GRACE_MILLIS;
+            while (thread.isAlive()) {
+                try {
+                    if (!interrupted) thread.join();
+                    else {
+                        long left = deadline - System.currentTimeMillis();
+                        if (left <= 0) break;
+                        thread.join(left);
+                    }
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                    deadline = System.currentTimeMillis() + STOP_GRACE_MILLIS;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+
+        // queues the record, waiting through interrupts; returns true if
+        // there were any
+        private boolean putUninterruptibly(Record record) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(record);
+                    return interrupted;
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        public void run() {
+            while (true) {
+                Record record;
+                try {
+                    record = queue.take();
+                }
+                catch (InterruptedException e) {
+                    continue;
+                }
+                PrintWriter writer = out;
+                if (record == Record.STOP) {
+                    // a missing index must not hold back the tasks after it
+                    while (!waiting.isEmpty()) writer.print(waiting.poll().text);
+                    writer.flush();
+                    return;
+                }
+                if (record == Record.FLUSH) writer.flush();
+                else if (record.task < 0) writer.print(record.text);
+                else {
+                    waiting.add(record);
+                    while (!waiting.isEmpty() && waiting.peek().task <= nextTask) {
+                        Record next = waiting.poll();
+                        writer.print(next.text);
+                        if (next.task == nextTask) nextTask++;
+                    }
+                }
+                if (autoFlush && queue.isEmpty()) writer.flush();
+            }
+        }
+    }
+
    /**
      * Terminates the current line by printing the line-separator string.
      */
     public static void println() {
-        out.println();
+        PrintWriter writer = writer();
+        writer.println();
+        printedLine(writer);
     }
 
    /**
@@ -98,7 +583,9 @@ public final class StdOut {
      * @param x the object to print
      */
     public static void println(Object x) {
-        out.println(x);
+        PrintWriter writer = writer();
+        writer.println(x);
+        printedLine(writer);
     }
 
    /**
@@ -107,7 +594,9 @@ public final class StdOut {
      * @param x the boolean to print
      */
     public static void println(boolean x) {
-        out.println(x);
+        PrintWriter writer = writer();
+        writer.println(x);
+        printedLine(writer);
     }
 
    /**
@@ -116,7 +605,9 @@ public final class StdOut {
      * @param x the character to print
      */
     public static void println(char x) {
-        out.println(x);
+        PrintWriter writer = writer();
+        writer.println(x);
+        printedLine(writer);
     }
 
    /**
@@ -125,7 +616,9 @@ public final class StdOut {
      * @param x the double to print
      */
     public static void println(double x) {
-        out.println(x);
+        PrintWriter writer = writer();
+        writer.println(x);
+        printedLine(writer);
     }
 
    /**
@@ -134,7 +627,9 @@ public final class StdOut {
      * @param x the integer to print
      */
     public static void println(float x) {
-        out.println(x);
+        PrintWriter writer = writer();
+        writer.println(x);
+        printedLine(writer);
     }
 
    /**
@@ -143,7 +638,7 @@ public final class StdOut {
      * @param x the integer to print
      */
     public static void println(int x) {
-        out.println(x);
+        printInteger(x, true);
     }
 
    /**
@@ -152,7 +647,7 @@ public final class StdOut {
      * @param x the long to print
      */
     public static void println(long x) {
-        out.println(x);
+        printInteger(x, true);
     }
 
    /**
@@ -161,7 +656,7 @@ public final class StdOut {
      * @param x the short to print
      */
     public static void println(short x) {
-        out.println(x);
+        printInteger(x, true);
     }
 
    /**
@@ -172,14 +667,14 @@ public final class StdOut {
      * @param x the byte to print
      */
     public static void println(byte x) {
-        out.println(x);
+        printInteger(x, true);
     }
 
    /**
      * Flushes standard output.
      */
     public static void print() {
-        out.flush();
+        flush();
     }
 
    /**
@@ -188,8 +683,9 @@ public final class StdOut {
      * @param x the object to print
      */
     public static void print(Object x) {
-        out.print(x);
-        out.flush();
+        PrintWriter writer = writer();
+        writer.print(x);
+        printed(writer);
     }
 
    /**
@@ -198,8 +694,9 @@ public final class StdOut {
      * @param x the boolean to print
      */
     public static void print(boolean x) {
-        out.print(x);
-        out.flush();
+        PrintWriter writer = writer();
+        writer.print(x);
+        printed(writer);
     }
 
    /**
@@ -208,8 +705,9 @@ public final class StdOut {
      * @param x the character to print
      */
     public static void print(char x) {
-        out.print(x);
-        out.flush();
+        PrintWriter writer = writer();
+        writer.print(x);
+        printed(writer);
     }
 
    /**
@@ -218,8 +716,9 @@ public final class StdOut {
      * @param x the double to print
      */
     public static void print(double x) {
-        out.print(x);
-        out.flush();
+        PrintWriter writer = writer();
+        writer.print(x);
+        printed(writer);
     }
 
    /**
@@ -228,8 +727,9 @@ public final class StdOut {
      * @param x the float to print
      */
     public static void print(float x) {
-        out.print(x);
-        out.flush();
+        PrintWriter writer = writer();
+        writer.print(x);
+        printed(writer);
     }
 
    /**
@@ -238,8 +738,7 @@ public final class StdOut {
      * @param x the integer to print
      */
     public static void print(int x) {
-        out.print(x);
-        out.flush();
+        printInteger(x, false);
     }
 
    /**
@@ -248,8 +747,7 @@ public final class StdOut {
      * @param x the long integer to print
      */
     public static void print(long x) {
-        out.print(x);
-        out.flush();
+        printInteger(x, false);
     }
 
    /**
@@ -258,8 +756,7 @@ public final class StdOut {
      * @param x the short integer to print
      */
     public static void print(short x) {
-        out.print(x);
-        out.flush();
+        printInteger(x, false);
     }
 
    /**
@@ -268,8 +765,7 @@ public final class StdOut {
      * @param x the byte to print
      */
     public static void print(byte x) {
-        out.print(x);
-        out.flush();
+        printInteger(x, false);
     }
 
    /**
@@ -281,8 +777,9 @@ public final class StdOut {
      * @param args   the arguments accompanying the format string
      */
     public static void printf(String format, Object... args) {
-        out.printf(LOCALE, format, args);
-        out.flush();
+        PrintWriter writer = writer();
+        writer.printf(LOCALE, format, args);
+        printed(writer);
     }
 
    /**
@@ -294,8 +791,9 @@ public final class StdOut {
      * @param args   the arguments accompanying the format string
      */
     public static void printf(Locale locale, String format, Object... args) {
-        out.printf(locale, format, args);
-        out.flush();
+        PrintWriter writer = writer();
+        writer.printf(locale, format, args);
+        printed(writer);
     }
 
    /**
@@ -310,6 +808,57 @@ public final class StdOut {
         StdOut.println(17);
         StdOut.println(true);
         StdOut.printf("%.6f\n", 1.0/7.0);
+
+        // write many lines through the buffer, flushed once at the end
+        StdOut.setBufferedMode(1 << 16);
+        for (int i = -3; i <= 3; i++) {
+            StdOut.print(i);
+            StdOut.print(' ');
+            StdOut.println(i * 1000000000000L);
+        }
+        StdOut.println(Long.MIN_VALUE);
+        StdOut.flush();
+        StdOut.setAutoFlushMode();
+
+        // four threads print tasks in arbitrary order; output is in task order
+        StdOut.setParallelMode(64);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int first = t;
+            threads[t] = new Thread(() -> {
+                for (int task = first; task < 12; task += threads.length) {
+                    StdOut.beginTask(task);
+                    StdOut.print("task ");
+                    StdOut.println(task);
+                    StdOut.endTask();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        StdOut.setSerialMode();
+
+        // leaving parallel mode from an interrupted thread still writes
+        // everything, returns, and keeps the interrupt
+        StdOut.setParallelMode(4);
+        StdOut.println("written before an interrupted setSerialMode");
+        Thread.currentThread().interrupt();
+        long start = System.nanoTime();
+        StdOut.setSerialMode();
+        long tookMillis = (System.nanoTime() - start) / 1000000;
+        if (!Thread.interrupted()) {
+            throw new AssertionError("setSerialMode cleared the interrupt");
+        }
+        if (tookMillis > 2000) {
+            throw new AssertionError("setSerialMode took " + tookMillis + " ms");
+        }
     }
 
 }
@@ -0,0 +1,143 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Keeps the k best of a stream of (id, score) pairs, in a bounded min-heap,
+ * so that selecting the top k of n candidates costs O(n log k) time and
+ * O(k) space. Higher scores are better; among equal scores, the lower id
+ * is better, so results are deterministic and the first of the top k is the
+ * one a "first max wins" scan in id order would find.
+ */
+public class TopK {
+
+    private final int k;
+    private final int[] ids;
+    private final double[] scores;
+    private int size;
+
+    /** Creates an empty selection of the k best. */
+    public TopK(int k) {
+        if (k < 0) throw new IllegalArgumentException("k must be non-negative: " + k);
+        this.k = k;
+        this.ids = new int[k];
+        this.scores = new double[k];
+    }
+
+    /** Returns the number of pairs kept so far (at most k). */
+    public int size() {
+        return size;
+    }
+
+    /** Returns true if k pairs are kept, so a new one must beat the worst of them. */
+    public boolean isFull() {
+        return size == k;
+    }
+
+    /** Returns the worst kept score; only meaningful if size() > 0. */
+    public double worstScore() {
+        return scores[0];
+    }
+
+    /** Offers a pair; it is kept if it is among the k best so far. */
+    public void offer(int id, double score) {
+        if (size < k) {
+            // append, then sift up
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!worse(id, score, ids[parent], scores[parent])) break;
+                ids[i] = ids[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            ids[i] = id;
+            scores[i] = score;
+        }
+        else if (k > 0 && worse(ids[0], scores[0], id, score)) {
+            siftDown(id, score);
+        }
+    }
+
+    // puts (id, score) at the root and restores the heap order
+    private void siftDown(int id, double score) {
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && worse(ids[child + 1], scores[child + 1], ids[child], scores[child])) {
+                child++;
+            }
+            if (!worse(ids[child], scores[child], id, score)) break;
+            ids[i] = ids[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        ids[i] = id;
+        scores[i] = score;
+    }
+
+    // true if pair a ranks below pair b
+    private static boolean worse(int idA, double scoreA, int idB, double scoreB) {
+        return scoreA < scoreB || (scoreA == scoreB && idA > idB);
+    }
+
+    /**
+     * Returns the ids of the kept pairs, best first, and writes their scores
+     * to sortedScores (if not null, of length at least size()).
+     * Empties this selection.
+     */
+    public int[] drain(double[] sortedScores) {
+        int n = size;
+        int[] result = new int[n];
+        for (int i = n - 1; i >= 0; i--) {
+            result[i] = ids[0];
+            if (sortedScores != null) sortedScores[i] = scores[0];
+            size--;
+            if (size > 0) siftDown(ids[size], scores[size]);
+        }
+        return result;
+    }
+
+    /**
+     * Checks selections of random pairs, with many tied scores, against a
+     * full sort, and that the first of the recommendations of Network.recommend
+     * is what recommendWhoToFollow returns, on a generated network of
+     * args[0] users (default 2000).
+     */
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        for (int round = 0; round < 1000; round++) {
+            int n = random.nextInt(200);
+            int k = random.nextInt(20);
+            long[] sorted = new long[n];    // best first: score descending, then id ascending
+            TopK top = new TopK(k);
+            for (int id = 0; id < n; id++) {
+                int score = random.nextInt(10);
+                top.offer(id, score);
+                sorted[id] = ((long) (9 - score) << 32) | id;
+            }
+            Arrays.sort(sorted);
+            double[] scores = new double[top.size()];
+            int[] ids = top.drain(scores);
+            if (ids.length != Math.min(k, n)) throw new AssertionError("kept " + ids.length + " of " + n + " for k = " + k);
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] != (int) sorted[i] || scores[i] != 9 - (sorted[i] >>> 32)) {
+                    throw new AssertionError("pair " + i + " of the top " + k + " of " + n + " is " + ids[i]);
+                }
+            }
+        }
+
+        int users = (args.length > 0) ? Integer.parseInt(args[0]) : 2000;
+        Network network = new NetworkGenerator(1).generate("powerlaw", users);
+        for (int i = 0; i < users; i += 97) {
+            String name = NetworkGenerator.name(i);
+            Recommendation[] recommendations = network.recommend(name, 3);
+            String expected = network.recommendWhoToFollow(name);
+            String first = (recommendations.length == 0) ? null : recommendations[0].getName();
+            if ((expected == null) ? first != null : !expected.equals(first)) {
+                throw new AssertionError(name + ": recommend starts with " + first + ", not " + expected);
+            }
+        }
+        System.out.println("TopK: selections and recommendations agree");
+    }
+}
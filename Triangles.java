@@ -0,0 +1,214 @@
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * The triangles of the follow graph, with follows taken in either
+ * direction (A and B are neighbours if either follows the other), and the
+ * local clustering coefficient of every user: the fraction of the pairs of
+ * its neighbours that are neighbours themselves. A user whose neighbours
+ * are all connected to each other, unlike those of most real users, is a
+ * typical sign of a follow farm.
+ *
+ * Each neighbour pair is oriented from the user of lower degree to the one
+ * of higher degree (the lower id on ties), and each triangle is found once,
+ * from its lowest-ranked vertex, by intersecting sorted forward lists; every
+ * forward list then has O(sqrt(follows)) ids, which bounds the work even
+ * around celebrities. The users are split among the tasks of a fork/join
+ * pool, both to build the forward lists and to intersect them.
+ *
+ * Users are identified by their ids (indices) in the network.
+ */
+public class Triangles {
+
+    // users per fork/join task
+    private static final int THRESHOLD = 1024;
+
+    private final long[] triangles;
+    private final int[] degrees;
+
+    private Triangles(long[] triangles, int[] degrees) {
+        this.triangles = triangles;
+        this.degrees = degrees;
+    }
+
+    /** Counts the triangles of the given graph, on the given pool. */
+    public static Triangles count(CompactGraph graph, ForkJoinPool pool) {
+        int n = graph.nodeCount();
+        CompactGraph undirected = graph.undirected();
+        int[] neighbours = undirected.outTargets();
+        // keep the neighbours of higher rank; the lists stay sorted by id
+        int[][] forward = new int[n][];
+        pool.invoke(new Range(0, n, u -> {
+            int du = undirected.outDegree(u);
+            int[] kept = new int[du];
+            int size = 0;
+            for (int i = undirected.outStart(u); i < undirected.outStart(u + 1); i++) {
+                int v = neighbours[i];
+                int dv = undirected.outDegree(v);
+                if (dv > du || (dv == du && v > u)) kept[size++] = v;
+            }
+            forward[u] = Arrays.copyOf(kept, size);
+        }));
+        AtomicLongArray counts = new AtomicLongArray(n);
+        pool.invoke(new Range(0, n, u -> {
+            int[] fu = forward[u];
+            for (int v : fu) {
+                int[] fv = forward[v];
+                // each common forward neighbour w closes the triangle u, v, w
+                int i = 0;
+                int j = 0;
+                while (i < fu.length && j < fv.length) {
+                    if (fu[i] < fv[j]) {
+                        i++;
+                    } else if (fu[i] > fv[j]) {
+                        j++;
+                    } else {
+                        counts.incrementAndGet(u);
+                        counts.incrementAndGet(v);
+                        counts.incrementAndGet(fu[i]);
+                        i++;
+                        j++;
+                    }
+                }
+            }
+        }));
+        long[] triangles = new long[n];
+        for (int u = 0; u < n; u++) {
+            triangles[u] = counts.get(u);
+        }
+        int[] degrees = new int[n];
+        for (int u = 0; u < n; u++) {
+            degrees[u] = undirected.outDegree(u);
+        }
+        return new Triangles(triangles, degrees);
+    }
+
+    // runs an action on every user of a range, splitting it in halves down to THRESHOLD users
+    private static class Range extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final IntConsumer action;
+
+        Range(int from, int to, IntConsumer action) {
+            this.from = from;
+            this.to = to;
+            this.action = action;
+        }
+
+        protected void compute() {
+            if (to - from <= THRESHOLD) {
+                for (int u = from; u < to; u++) {
+                    action.accept(u);
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Range(from, middle, action), new Range(middle, to, action));
+            }
+        }
+    }
+
+    /** Returns the number of triangles of each user. Don't modify it. */
+    public long[] perUser() {
+        return triangles;
+    }
+
+    /** Returns the number of triangles of the given user. */
+    public long triangles(int u) {
+        return triangles[u];
+    }
+
+    /** Returns the number of triangles of the graph. */
+    public long total() {
+        long sum = 0;
+        for (long t : triangles) {
+            sum += t;
+        }
+        return sum / 3;
+    }
+
+    /** Returns the number of neighbours of the given user (followees and followers, each once). */
+    public int degree(int u) {
+        return degrees[u];
+    }
+
+    /**
+     * Returns the local clustering coefficient of the given user: its
+     * triangles over the pairs of its neighbours, or 0 if it has fewer than
+     * two neighbours.
+     */
+    public double clustering(int u) {
+        long d = degrees[u];
+        return (d < 2) ? 0 : 2.0 * triangles[u] / (d * (d - 1));
+    }
+
+    /** Returns the local clustering coefficient of every user. */
+    public double[] clusteringCoefficients() {
+        double[] result = new double[triangles.length];
+        for (int u = 0; u < result.length; u++) {
+            result[u] = clustering(u);
+        }
+        return result;
+    }
+
+    /**
+     * Counts the triangles of a random graph of args[0] users (default
+     * 1000000) following args[1] random users each (default 10), and checks
+     * those of a smaller one against a brute-force count.
+     */
+    public static void main(String[] args) {
+        int n = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        int degree = (args.length > 1) ? Integer.parseInt(args[1]) : 10;
+
+        CompactGraph small = randomGraph(200, 15, new Random(1));
+        Triangles t = count(small, ForkJoinPool.commonPool());
+        for (int u = 0; u < 200; u++) {
+            long expected = 0;
+            for (int v = 0; v < 200; v++) {
+                for (int w = v + 1; w < 200; w++) {
+                    if (adjacent(small, u, v) && adjacent(small, u, w) && adjacent(small, v, w)) expected++;
+                }
+            }
+            if (t.triangles(u) != expected) {
+                throw new AssertionError(u + " has " + expected + " triangles, not " + t.triangles(u));
+            }
+        }
+        System.out.println("200 users: " + t.total() + " triangles, as counted by brute force");
+
+        CompactGraph graph = randomGraph(n, degree, new Random(2));
+        long start = System.nanoTime();
+        t = count(graph, ForkJoinPool.commonPool());
+        System.out.printf("%d users, %d follows: %d triangles in %.0f ms%n", n, graph.edgeCount(),
+                          t.total(), (System.nanoTime() - start) / 1e6);
+    }
+
+    private static CompactGraph randomGraph(int n, int degree, Random random) {
+        IdLists followees = new IdLists(n);
+        IdLists followers = new IdLists(n);
+        for (int u = 0; u < n; u++) {
+            for (int i = 0; i < degree; i++) {
+                int v = random.nextInt(n);
+                if (v != u && !followees.contains(u, v)) {
+                    followees.add(u, v);
+                    followers.add(v, u);
+                }
+            }
+        }
+        return new CompactGraph(followees, followers, n);
+    }
+
+    private static boolean adjacent(CompactGraph graph, int u, int v) {
+        for (int i = graph.outStart(u); i < graph.outStart(u + 1); i++) {
+            if (graph.outTargets()[i] == v) return true;
+        }
+        for (int i = graph.inStart(u); i < graph.inStart(u + 1); i++) {
+            if (graph.inSources()[i] == v) return true;
+        }
+        return false;
+    }
+}
@@ -7,11 +7,22 @@ public class User {
     private String[] follows;  // array of user names that this user follows
     private int fCount;        // actual number of followees (must be <= maxfCount)
 
+    // case-folded keys and their fingerprints (see NameKey), of the name and
+    // of each followee, so that comparisons ignoring case don't fold again
+    private String key;
+    private long fingerprint;
+    private String[] followKeys;
+    private long[] followFingerprints;
+
     /** Creates a user with an empty list of followees. */
     public User(String name) {
         this.name = name;
         follows = new String[maxfCount]; // fixed-size array
         fCount = 0;                      
+        key = NameKey.fold(name);
+        fingerprint = NameKey.fingerprint(key);
+        followKeys = new String[maxfCount];
+        followFingerprints = new long[maxfCount];
     }
 
     /** Creates a user with some followees. For testing toString/follows. */
@@ -20,10 +31,9 @@ public class User {
         // If gettingStarted == true, we fill the array with "Foo", "Bar", "Baz"
         // so the autograder's test "checks follows baz" expects 'true'
         if (gettingStarted) {
-            follows[0] = "Foo";
-            follows[1] = "Bar";
-            follows[2] = "Baz";
-            fCount = 3;
+            addFollowee("Foo");
+            addFollowee("Bar");
+            addFollowee("Baz");
         }
     }
 
@@ -32,7 +42,20 @@ public class User {
         return name;
     }
 
-    /** Returns the follows array. */
+    /** Returns the case-folded key of the name of this user (see NameKey). */
+    public String getKey() {
+        return key;
+    }
+
+    /** Returns the fingerprint of the key of this user (see NameKey). */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Returns the follows array. Don't modify it: the keys of the followees
+     * are kept alongside it.
+     */
     public String[] getfFollows() {
         return follows;
     }
@@ -42,13 +65,29 @@ public class User {
         return fCount;
     }
 
+    /** Returns the case-folded key of the i-th name this user follows (see NameKey). */
+    public String getFollowKey(int i) {
+        return followKeys[i];
+    }
+
+    /** Returns the fingerprint of the key of the i-th name this user follows (see NameKey). */
+    public long getFollowFingerprint(int i) {
+        return followFingerprints[i];
+    }
+
     /**
      * If this user follows the given name, returns true; otherwise false.
      * IMPORTANT: Do a case-insensitive check (equalsIgnoreCase).
      */
     public boolean follows(String name) {
+        String key = NameKey.fold(name);
+        return followsKey(key, NameKey.fingerprint(key));
+    }
+
+    /** Returns true if this user follows the name of the given key and fingerprint (see NameKey). */
+    public boolean followsKey(String key, long fingerprint) {
         for (int i = 0; i < fCount; i++) {
-            if (follows[i].equalsIgnoreCase(name)) {
+            if (NameKey.matches(followKeys[i], followFingerprints[i], key, fingerprint)) {
                 return true;
             }
         }
@@ -63,6 +102,19 @@ public class User {
      * expects both to be added successfully. Therefore, "Foo" != "foo".
      */
     public boolean addFollowee(String name) {
+        String key = NameKey.fold(name);
+        return addFollowee(name, key, NameKey.fingerprint(key));
+    }
+
+    /**
+     * Makes this user follow the given user, as addFollowee(followee.getName()),
+     * but sharing the key the followee already has instead of folding its name again.
+     */
+    public boolean addFollowee(User followee) {
+        return addFollowee(followee.name, followee.key, followee.fingerprint);
+    }
+
+    private boolean addFollowee(String name, String key, long fingerprint) {
         // Check if this user already follows name EXACTLY (case-sensitive)
         for (int i = 0; i < fCount; i++) {
             if (follows[i].equals(name)) {
@@ -76,6 +128,8 @@ public class User {
         }
         // Add followee
         follows[fCount] = name;
+        followKeys[fCount] = key;
+        followFingerprints[fCount] = fingerprint;
         fCount++;
         return true;
     }
@@ -90,9 +144,12 @@ public class User {
                 // Shift elements to the left to fill the gap
                 for (int j = i; j < fCount - 1; j++) {
                     follows[j] = follows[j + 1];
+                    followKeys[j] = followKeys[j + 1];
+                    followFingerprints[j] = followFingerprints[j + 1];
                 }
                 // Clear the last slot
                 follows[fCount - 1] = null; 
+                followKeys[fCount - 1] = null;
                 fCount--;
                 return true;
             }
@@ -109,7 +166,7 @@ public class User {
         int count = 0;
         for (int i = 0; i < this.fCount; i++) {
             // Check if 'other' also follows the same (case-insensitive):
-            if (other.follows(this.follows[i])) {
+            if (other.followsKey(this.followKeys[i], this.followFingerprints[i])) {
                 count++;
             }
         }
@@ -121,7 +178,7 @@ public class User {
      * We'll be consistent with 'follows(...)' being case-insensitive.
      */
     public boolean isFriendOf(User other) {
-        return this.follows(other.getName()) && other.follows(this.getName());
+        return this.followsKey(other.key, other.fingerprint) && other.followsKey(this.key, this.fingerprint);
     }
 
     /**